@@ -0,0 +1,121 @@
+package net.arkaine;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traitement des réponses de /v1/chat/completions dans {@link GPT4AllChatApp} :
+ * analyse en arbre Gson (ancienne voie) contre lecture en flux
+ * ({@link ChatCompletionParser}), coût de l'indentation du panneau brut et
+ * lecture d'un flux SSE par {@link ChatStreamReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatJsonBenchmark {
+    private static final Gson PRETTY = new GsonBuilder().setPrettyPrinting().create();
+
+    /** Taille approximative du texte généré, en caractères. */
+    @Param({"1000", "32000", "256000"})
+    int replyChars;
+
+    private byte[] body;
+    private byte[] sse;
+
+    @Setup
+    public void setUp() {
+        StringBuilder reply = new StringBuilder(replyChars);
+        while (reply.length() < replyChars) {
+            reply.append("Voici une phrase de réponse générée, avec \"guillemets\" et accents. ");
+        }
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", reply.toString());
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "chatcmpl-bench");
+        response.addProperty("object", "chat.completion");
+        response.add("choices", choices);
+        body = response.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Un événement par mot, comme un serveur qui streame token par token
+        StringBuilder events = new StringBuilder();
+        for (String word : reply.toString().split(" ")) {
+            JsonObject delta = new JsonObject();
+            delta.addProperty("content", word + " ");
+            JsonObject eventChoice = new JsonObject();
+            eventChoice.add("delta", delta);
+            JsonArray eventChoices = new JsonArray();
+            eventChoices.add(eventChoice);
+            JsonObject event = new JsonObject();
+            event.add("choices", eventChoices);
+            events.append("data: ").append(event).append("\n\n");
+        }
+        events.append("data: [DONE]\n\n");
+        sse = events.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String treeParseTwice() {
+        // Ancienne voie : chaîne, arbre, indentation puis seconde analyse
+        String text = new String(body, StandardCharsets.UTF_8);
+        JsonObject tree = JsonParser.parseString(text).getAsJsonObject();
+        PRETTY.toJson(tree);
+        return PRETTY.fromJson(text, JsonObject.class)
+                .getAsJsonArray("choices").get(0).getAsJsonObject()
+                .getAsJsonObject("message").get("content").getAsString();
+    }
+
+    @Benchmark
+    public String treeParse() {
+        return JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject()
+                .getAsJsonArray("choices").get(0).getAsJsonObject()
+                .getAsJsonObject("message").get("content").getAsString();
+    }
+
+    @Benchmark
+    public String streamingParse() throws IOException {
+        return ChatCompletionParser.parse(
+                        new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8))
+                .getChoices().get(0).getContent();
+    }
+
+    @Benchmark
+    public String prettyPrint() {
+        return PRETTY.toJson(JsonParser.parseString(new String(body, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String sseStream() throws IOException {
+        return new ChatStreamReader().read(new Buffer().write(sse), delta -> { });
+    }
+}
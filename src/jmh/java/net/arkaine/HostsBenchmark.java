@@ -0,0 +1,133 @@
+package net.arkaine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemins du fichier hosts sur des fichiers synthétiques : construction et
+ * {@code toString} des {@link HostEntry}, chargement d'un {@link HostsDocument}
+ * et rafraîchissement par diff, comme le font {@code HostsManager.loadHostsFile}
+ * et {@code refreshHostsFile}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HostsBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int lines;
+
+    private Path file;
+    private Path modified;
+    private String[] content;
+    private HostEntry[] hostEntries;
+    private HostsDocument document;
+    private MappedHostsFile modifiedFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hosts-bench", ".txt");
+        modified = Files.createTempFile("hosts-bench-modified", ".txt");
+        content = new String[lines];
+        for (int i = 0; i < lines; i++) {
+            content[i] = syntheticLine(i);
+        }
+        // Entrées construites une fois : hostEntryToString ne mesure que toString
+        hostEntries = new HostEntry[lines];
+        for (int i = 0; i < lines; i++) {
+            hostEntries[i] = new HostEntry(content[i]);
+        }
+        write(file, content, -1);
+        // Une ligne sur mille modifiée : cas typique d'un rafraîchissement
+        write(modified, content, 1000);
+        document = HostsDocument.load(file);
+        modifiedFile = MappedHostsFile.open(modified);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(modified);
+    }
+
+    static String syntheticLine(int i) {
+        if (i % 50 == 0) {
+            return "# bloc " + i;
+        }
+        String line = (i % 7) + "." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255)
+                + "\thost" + i + ".example.com host" + i;
+        return i % 5 == 0 ? "#" + line : line;
+    }
+
+    private static void write(Path path, String[] lines, int modifyEvery) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines.length; i++) {
+                String line = modifyEvery > 0 && i % modifyEvery == 0 ? lines[i] + " alias" + i : lines[i];
+                out.write(line);
+                out.write('\n');
+            }
+        }
+    }
+
+    @Benchmark
+    public void hostEntryConstruction(Blackhole blackhole) {
+        for (String line : content) {
+            blackhole.consume(new HostEntry(line));
+        }
+    }
+
+    @Benchmark
+    public void hostEntryToString(Blackhole blackhole) {
+        for (HostEntry entry : hostEntries) {
+            blackhole.consume(entry.toString());
+        }
+    }
+
+    @Benchmark
+    public HostsDocument load() throws IOException {
+        return HostsDocument.load(file);
+    }
+
+    @Benchmark
+    public HostsIndex buildIndex() {
+        return HostsIndex.build(document);
+    }
+
+    @Benchmark
+    public int refresh() {
+        LazyHostEntryList entries = new LazyHostEntryList(HostsDocument.of(openSource()));
+        List<LineDiff.Hunk> hunks = LineDiff.diff(entries.getDocument().snapshot(), modifiedFile);
+        entries.applyDiff(hunks, modifiedFile);
+        return entries.size();
+    }
+
+    private MappedHostsFile openSource() {
+        try {
+            return MappedHostsFile.open(file);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package net.arkaine;
 
-import org.springframework.boot.autoconfigure.SpringBootApplication;
-
-@SpringBootApplication
+/**
+ * Lancement direct de la fenêtre de chat : le catalogue des modèles et le
+ * client HTTP sont préparés en arrière-plan pendant le démarrage de JavaFX.
+ */
 public class Application {
     public static void main(String[] args) {
+        ModelCatalog.warmUp();
         javafx.application.Application.launch(GPT4AllChatApp.class, args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,318 @@
+package net.arkaine;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Import de listes de blocage (publicité, télémétrie) dans une section du
+ * fichier hosts, en flux : les listes sont lues ligne à ligne, le fichier
+ * hosts est projeté en mémoire ({@link MappedHostsFile}) et le résultat est
+ * écrit au fil de l'eau, sans jamais tenir le fichier dans le tas. Les lignes
+ * hors de la section sont recopiées octet pour octet, fin de ligne comprise ;
+ * les lignes écrites prennent la fin de ligne de la première ligne du fichier. Seules les empreintes des noms déjà vus sont gardées,
+ * dans un {@link HashedStringSet}.
+ *
+ * Formats acceptés : lignes hosts ({@code 0.0.0.0 domaine}, quelle que soit
+ * l'adresse) et domaines seuls ; commentaires "#" et "!" ignorés. Chaque nom
+ * valide devient {@code 0.0.0.0 domaine}, sauf s'il est déjà déclaré hors de
+ * la section. La section est remplacée entière : un nouvel import de la même
+ * section ne cumule pas les anciens noms.
+ */
+public class BlocklistImporter {
+    public static final String DEFAULT_SECTION = "blocklist";
+    private static final String BLOCK_ADDRESS = "0.0.0.0";
+    private static final int PROGRESS_INTERVAL = 1 << 16;
+    // Noms déclarés par les listes pour le système lui-même : jamais bloqués
+    private static final Set<String> RESERVED = HostLine.SYSTEM_NAMES;
+
+    /** Compteurs de l'import, à ne lire que pendant l'appel de {@link Progress#update}. */
+    public static final class Stats {
+        private long linesRead;
+        private long bytesRead;
+        private long totalBytes;
+        private long imported;
+        private long duplicates;
+        private long invalid;
+
+        public long getLinesRead() {
+            return linesRead;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        public long getInvalid() {
+            return invalid;
+        }
+
+        @Override
+        public String toString() {
+            return imported + " entrée(s) importée(s), " + duplicates + " doublon(s), "
+                    + invalid + " ligne(s) invalide(s)";
+        }
+    }
+
+    public interface Progress {
+        void update(Stats stats);
+    }
+
+    private interface LineVisitor {
+        void visit(int index, String text, boolean inSection, boolean sectionStart) throws IOException;
+    }
+
+    /** Sortie en octets : lignes d'origine recopiées telles quelles, nouvelles lignes en UTF-8. */
+    private static final class LineOutput {
+        private final OutputStream out;
+        private final byte[] separator;
+        // Dernière ligne d'origine sans retour final : séparateur dû si quelque chose la suit
+        private boolean separatorDue;
+
+        LineOutput(OutputStream out, byte[] separator) {
+            this.out = new BufferedOutputStream(out, 1 << 16);
+            this.separator = separator;
+        }
+
+        void copy(MappedHostsFile file, int index) throws IOException {
+            endPrevious();
+            file.copyLine(index, out);
+            separatorDue = file.separator(index).isEmpty();
+        }
+
+        void line(String text) throws IOException {
+            endPrevious();
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.write(separator);
+        }
+
+        private void endPrevious() throws IOException {
+            if (separatorDue) {
+                out.write(separator);
+                separatorDue = false;
+            }
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private final String section;
+    private final List<Path> sources;
+    private Progress progress = stats -> { };
+
+    public BlocklistImporter(String section, List<Path> sources) {
+        // Vérifie le nom avant de lire quoi que ce soit
+        HostsSection.header(section);
+        this.section = section.trim();
+        this.sources = sources;
+    }
+
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Écrit dans {@code out} le fichier {@code hosts} dont la section a été
+     * remplacée par les listes importées. La section garde sa place si elle
+     * existe, sinon elle est ajoutée à la fin.
+     */
+    public Stats merge(Path hosts, OutputStream out) throws IOException {
+        Stats stats = new Stats();
+        for (Path source : sources) {
+            stats.totalBytes += Files.size(source);
+        }
+
+        MappedHostsFile file = MappedHostsFile.open(hosts);
+        // Première passe : noms déjà déclarés hors de la section
+        HashedStringSet seen = new HashedStringSet(1 << 16);
+        scan(file, (index, text, inSection, sectionStart) -> {
+            if (!inSection) {
+                HostLine line = HostLine.parse(text);
+                if (line.isMapping()) {
+                    for (String name : line.getHostnames()) {
+                        seen.add(HostsIndex.normalize(name));
+                    }
+                }
+            }
+        });
+
+        // Seconde passe : recopie, la nouvelle section à la place de l'ancienne
+        LineOutput output = new LineOutput(out, (file.size() > 0 && file.separator(0).equals("\r\n") ? "\r\n" : "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        boolean[] written = {false};
+        scan(file, (index, text, inSection, sectionStart) -> {
+            if (sectionStart && !written[0]) {
+                writeSection(output, seen, stats);
+                written[0] = true;
+            }
+            if (!inSection) {
+                output.copy(file, index);
+            }
+        });
+        if (!written[0]) {
+            writeSection(output, seen, stats);
+        }
+        output.flush();
+        progress.update(stats);
+        return stats;
+    }
+
+    private void scan(MappedHostsFile file, LineVisitor visitor) throws IOException {
+        boolean inSection = false;
+        for (int index = 0; index < file.size(); index++) {
+            String text = file.line(index);
+            boolean sectionStart = false;
+            if (HostsSection.isHeader(text)) {
+                String name = HostsSection.headerName(text);
+                if (inSection && name == null) {
+                    // Ligne de fin de l'ancienne section : remplacée avec elle
+                    visitor.visit(index, text, true, false);
+                    inSection = false;
+                    continue;
+                }
+                inSection = section.equals(name);
+                sectionStart = inSection;
+            }
+            visitor.visit(index, text, inSection, sectionStart);
+        }
+    }
+
+    private void writeSection(LineOutput writer, HashedStringSet seen, Stats stats) throws IOException {
+        writer.line(HostsSection.header(section));
+        for (Path source : sources) {
+            // Les listes téléchargées ne sont pas toujours en UTF-8 valide : octets fautifs remplacés
+            // Octets comptés sous le décodeur : comparables à totalBytes, en avance d'un tampon au plus
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new CountingInputStream(Files.newInputStream(source), stats),
+                    StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE)), 1 << 16)) {
+                String text;
+                while ((text = reader.readLine()) != null) {
+                    stats.linesRead++;
+                    importLine(text, writer, seen, stats);
+                    if (stats.linesRead % PROGRESS_INTERVAL == 0) {
+                        progress.update(stats);
+                    }
+                }
+            }
+        }
+        writer.line(HostsSection.END);
+    }
+
+    /** Ajoute à {@link Stats#getBytesRead} les octets lus dans le fichier source. */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final Stats stats;
+
+        CountingInputStream(InputStream in, Stats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                stats.bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                stats.bytesRead += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            stats.bytesRead += skipped;
+            return skipped;
+        }
+    }
+
+    private static void importLine(String text, LineOutput writer, HashedStringSet seen, Stats stats)
+            throws IOException {
+        int comment = text.indexOf('#');
+        String content = (comment >= 0 ? text.substring(0, comment) : text).trim();
+        if (content.isEmpty() || content.startsWith("!")) {
+            return;
+        }
+        String[] tokens = content.split("\\s+");
+        int first = HostLine.isIpAddress(tokens[0]) ? 1 : 0;
+        if (first == 0 && tokens.length > 1) {
+            stats.invalid++;
+            return;
+        }
+        for (int i = first; i < tokens.length; i++) {
+            String name = normalizeDomain(tokens[i]);
+            if (name == null) {
+                // Noms réservés et adresses (0.0.0.0 0.0.0.0) : ni invalides ni importés
+                if (!RESERVED.contains(tokens[i].toLowerCase(Locale.ROOT)) && !HostLine.isIpAddress(tokens[i])) {
+                    stats.invalid++;
+                }
+                continue;
+            }
+            if (!seen.add(name)) {
+                stats.duplicates++;
+                continue;
+            }
+            writer.line(BLOCK_ADDRESS + ' ' + name);
+            stats.imported++;
+        }
+    }
+
+    /** Nom de domaine en minuscules sans point final, ou null s'il n'est pas bloquable. */
+    static String normalizeDomain(String token) {
+        String name = token.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        if (name.isEmpty() || name.length() > 253 || name.indexOf('.') < 0
+                || RESERVED.contains(name) || HostLine.isIpAddress(name)) {
+            return null;
+        }
+        int labelStart = 0;
+        for (int i = 0; i <= name.length(); i++) {
+            char c = i < name.length() ? name.charAt(i) : '.';
+            if (c == '.') {
+                int length = i - labelStart;
+                if (length == 0 || length > 63 || name.charAt(labelStart) == '-' || name.charAt(i - 1) == '-') {
+                    return null;
+                }
+                labelStart = i + 1;
+            } else if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return null;
+            }
+        }
+        return name;
+    }
+}
@@ -0,0 +1,345 @@
+package net.arkaine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traitement par lot, sans interface JavaFX : chaque ligne d'un fichier JSONL
+ * d'entrée est envoyée au serveur et son résultat ajouté au fichier JSONL de
+ * sortie dès qu'il arrive.
+ *
+ * Entrée : {@code {"id": "...", "prompt": "..."}} ou {@code {"id": "...", "messages": [...]}},
+ * avec un {@code "model"} optionnel qui remplace celui de la ligne de commande.
+ * Sans id, le numéro de ligne en tient lieu.
+ *
+ * Le fichier d'entrée est lu au fil de l'eau : un sémaphore garde au plus
+ * {@code --concurrency} requêtes en vol et bloque la lecture sinon. Au
+ * redémarrage, les id déjà réussis dans la sortie sont sautés, ce qui rend
+ * le traitement reprenable après un arrêt brutal.
+ *
+ * Usage : {@code ChatBatchRunner entrée.jsonl sortie.jsonl --model nom [--concurrency 2] [--url ...]}
+ */
+public class ChatBatchRunner {
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final OkHttpClient client;
+    private final String apiUrl;
+    private final String defaultModel;
+    private final int concurrency;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private BufferedWriter output;
+
+    public ChatBatchRunner(OkHttpClient client, String apiUrl, String defaultModel, int concurrency) {
+        // Dispatcher propre : la limite est celle du sémaphore, pas celle par hôte d'OkHttp
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(concurrency);
+        dispatcher.setMaxRequestsPerHost(concurrency);
+        this.client = client.newBuilder()
+                .dispatcher(dispatcher)
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .build();
+        this.apiUrl = apiUrl;
+        this.defaultModel = defaultModel;
+        this.concurrency = concurrency;
+    }
+
+    public void run(Path input, Path outputFile) throws IOException, InterruptedException {
+        Set<String> done = completedIds(outputFile);
+        if (!done.isEmpty()) {
+            System.err.println("Reprise : " + done.size() + " prompt(s) déjà traités");
+        }
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        long lastReport = start;
+        long submitted = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            output = writer;
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonObject item;
+                try {
+                    item = JsonParser.parseString(line).getAsJsonObject();
+                } catch (RuntimeException e) {
+                    System.err.println("Ligne " + lineNumber + " ignorée : " + e.getMessage());
+                    continue;
+                }
+                JsonElement idField = item.get("id");
+                String id = idField == null || idField.isJsonNull() ? String.valueOf(lineNumber)
+                        : idField.isJsonPrimitive() ? idField.getAsString() : idField.toString();
+                if (done.contains(id)) {
+                    continue;
+                }
+
+                // Contre-pression : la lecture attend qu'une requête se termine
+                inFlight.acquire();
+                try {
+                    submit(id, item, inFlight);
+                } catch (RuntimeException e) {
+                    // Ligne inexploitable (URL invalide...) : elle échoue seule, le lot continue
+                    fail(id, "Ligne " + lineNumber + " invalide : " + e.getMessage());
+                    inFlight.release();
+                }
+                submitted++;
+
+                long now = System.nanoTime();
+                if (now - lastReport >= REPORT_INTERVAL_NANOS) {
+                    report(start, now);
+                    lastReport = now;
+                }
+            }
+            inFlight.acquire(concurrency);
+            report(start, System.nanoTime());
+            System.err.println(submitted + " prompt(s) envoyés, " + failed.get() + " en erreur");
+        } finally {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+    }
+
+    private void submit(String id, JsonObject item, Semaphore inFlight) {
+        JsonElement modelField = item.get("model");
+        String model = modelField == null || modelField.isJsonNull() ? defaultModel
+                : isString(modelField) ? modelField.getAsString() : null;
+        if (model == null) {
+            fail(id, "Aucun modèle : ajoutez --model ou un champ \"model\" (texte)");
+            inFlight.release();
+            return;
+        }
+        if (!item.has("messages") && !item.has("prompt")) {
+            fail(id, "Ni \"prompt\" ni \"messages\"");
+            inFlight.release();
+            return;
+        }
+        JsonArray messages = messages(item);
+        if (messages == null) {
+            fail(id, "\"prompt\" doit être un texte et \"messages\" un tableau");
+            inFlight.release();
+            return;
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.add("messages", messages);
+        Request request = new Request.Builder()
+                .url(apiUrl)
+                .post(RequestBody.create(body.toString(), JSON))
+                .build();
+        long start = System.nanoTime();
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                fail(id, "Erreur de connexion : " + e.getMessage());
+                inFlight.release();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    String responseBody = response.body().string();
+                    if (!response.isSuccessful()) {
+                        fail(id, "Erreur : " + response.code() + " " + response.message());
+                        return;
+                    }
+                    JsonObject json = JsonParser.parseString(responseBody).getAsJsonObject();
+                    String content = json.getAsJsonArray("choices").get(0).getAsJsonObject()
+                            .getAsJsonObject("message").get("content").getAsString();
+
+                    JsonObject result = new JsonObject();
+                    result.addProperty("id", id);
+                    result.addProperty("model", model);
+                    result.addProperty("response", content);
+                    result.addProperty("latency_ms", (System.nanoTime() - start) / 1_000_000);
+                    JsonElement usage = json.get("usage");
+                    if (usage != null && usage.isJsonObject()) {
+                        result.add("usage", usage);
+                        JsonElement tokens = usage.getAsJsonObject().get("completion_tokens");
+                        if (tokens != null && !tokens.isJsonNull()) {
+                            completionTokens.addAndGet(tokens.getAsLong());
+                        }
+                    }
+                    write(result);
+                    completed.incrementAndGet();
+                } catch (Exception e) {
+                    fail(id, "Erreur de traitement : " + e.getMessage());
+                } finally {
+                    inFlight.release();
+                }
+            }
+        });
+    }
+
+    /** Messages de la ligne : {@code messages} tel quel, ou {@code prompt} en message utilisateur ; null si mal typé. */
+    private static JsonArray messages(JsonObject item) {
+        if (item.has("messages")) {
+            JsonElement messages = item.get("messages");
+            return messages.isJsonArray() ? messages.getAsJsonArray() : null;
+        }
+        JsonElement prompt = item.get("prompt");
+        if (!isString(prompt)) {
+            return null;
+        }
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt.getAsString());
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+        return messages;
+    }
+
+    private static boolean isString(JsonElement element) {
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+    }
+
+    private void fail(String id, String message) {
+        JsonObject result = new JsonObject();
+        result.addProperty("id", id);
+        result.addProperty("error", message);
+        write(result);
+        failed.incrementAndGet();
+    }
+
+    /** Une ligne complète par résultat, vidée aussitôt : un arrêt brutal ne perd que les requêtes en vol. */
+    private synchronized void write(JsonObject result) {
+        try {
+            output.write(result.toString());
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            System.err.println("Écriture du résultat " + result.get("id") + " impossible : " + e.getMessage());
+        }
+    }
+
+    private void report(long start, long now) {
+        double seconds = Math.max((now - start) / 1e9, 1e-3);
+        System.err.printf("%d terminés, %d erreurs | %.2f prompts/s | %.1f tokens/s%n",
+                completed.get(), failed.get(), completed.get() / seconds, completionTokens.get() / seconds);
+        List<EndpointPool.Endpoint> endpoints = ChatHttpClients.endpoints().getEndpoints();
+        if (endpoints.size() > 1) {
+            StringBuilder line = new StringBuilder("  instances :");
+            for (EndpointPool.Endpoint endpoint : endpoints) {
+                line.append(' ').append(endpoint.getUrl().host()).append(':').append(endpoint.getUrl().port())
+                        .append('=').append(endpoint.getServed())
+                        .append(endpoint.isHealthy() ? "" : " (indisponible)");
+            }
+            System.err.println(line);
+        }
+    }
+
+    /**
+     * Relit la sortie d'un traitement précédent. Une dernière ligne tronquée
+     * par un arrêt brutal est retirée ; les lignes en erreur seront rejouées,
+     * comme celles illisibles ou sans identifiant, signalées puis ignorées.
+     */
+    static Set<String> completedIds(Path outputFile) throws IOException {
+        Set<String> ids = new HashSet<>();
+        if (!Files.exists(outputFile)) {
+            return ids;
+        }
+        truncatePartialLine(outputFile);
+        try (BufferedReader reader = Files.newBufferedReader(outputFile, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonObject result;
+                try {
+                    result = JsonParser.parseString(line).getAsJsonObject();
+                } catch (RuntimeException e) {
+                    System.err.println("Sortie, ligne " + lineNumber + " ignorée : " + e.getMessage());
+                    continue;
+                }
+                JsonElement id = result.get("id");
+                if (id == null || !id.isJsonPrimitive()) {
+                    System.err.println("Sortie, ligne " + lineNumber + " ignorée : identifiant absent");
+                    continue;
+                }
+                if (!result.has("error")) {
+                    ids.add(id.getAsString());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void truncatePartialLine(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long end = raf.length();
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < raf.length()) {
+                raf.setLength(end);
+            }
+        }
+    }
+
+    // Mode sans interface : clients et adresse pris à ChatHttpClients, sans charger la classe JavaFX
+    public static void main(String[] args) throws Exception {
+        String defaultUrl = ChatHttpClients.completionsUrl();
+        if (args.length < 2) {
+            System.err.println("Usage : ChatBatchRunner entrée.jsonl sortie.jsonl --model nom"
+                    + " [--concurrency 2] [--url " + defaultUrl + "]");
+            System.exit(2);
+        }
+        String model = null;
+        int concurrency = 2;
+        String url = defaultUrl;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--model" -> model = args[i + 1];
+                case "--concurrency" -> concurrency = Integer.parseInt(args[i + 1]);
+                case "--url" -> url = args[i + 1];
+                default -> {
+                    System.err.println("Option inconnue : " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        new ChatBatchRunner(ChatHttpClients.completions(), url, model, concurrency)
+                .run(Paths.get(args[0]), Paths.get(args[1]));
+    }
+}
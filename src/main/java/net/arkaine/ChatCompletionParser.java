@@ -0,0 +1,141 @@
+package net.arkaine;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lecture en une passe d'une réponse non streamée de /v1/chat/completions
+ * avec un {@link JsonReader} : seuls les champs utiles des choix sont
+ * matérialisés, le reste du document est sauté sans construire d'arbre.
+ */
+public final class ChatCompletionParser {
+
+    public static final class Choice {
+        private final String role;
+        private final String content;
+        private final String finishReason;
+
+        Choice(String role, String content, String finishReason) {
+            this.role = role;
+            this.content = content;
+            this.finishReason = finishReason;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public String getFinishReason() {
+            return finishReason;
+        }
+    }
+
+    /** Choix de la réponse et compteurs du bloc {@code usage}, -1 s'il est absent. */
+    public static final class Completion {
+        private final List<Choice> choices;
+        private final int promptTokens;
+        private final int completionTokens;
+
+        Completion(List<Choice> choices, int promptTokens, int completionTokens) {
+            this.choices = choices;
+            this.promptTokens = promptTokens;
+            this.completionTokens = completionTokens;
+        }
+
+        public List<Choice> getChoices() {
+            return choices;
+        }
+
+        public int getPromptTokens() {
+            return promptTokens;
+        }
+
+        public int getCompletionTokens() {
+            return completionTokens;
+        }
+    }
+
+    private ChatCompletionParser() {
+    }
+
+    public static Completion parse(Reader in) throws IOException {
+        List<Choice> choices = Collections.emptyList();
+        int promptTokens = -1;
+        int completionTokens = -1;
+        try (JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("choices".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    choices = readChoices(reader);
+                } else if ("usage".equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "prompt_tokens" -> promptTokens = reader.nextInt();
+                            case "completion_tokens" -> completionTokens = reader.nextInt();
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        return new Completion(choices, promptTokens, completionTokens);
+    }
+
+    private static List<Choice> readChoices(JsonReader reader) throws IOException {
+        List<Choice> choices = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String role = null;
+            String content = null;
+            String finishReason = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "message" -> {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "role" -> role = nextString(reader);
+                                case "content" -> content = nextString(reader);
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    // Ancien format /v1/completions
+                    case "text" -> content = nextString(reader);
+                    case "finish_reason" -> finishReason = nextString(reader);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            choices.add(new Choice(role, content, finishReason));
+        }
+        reader.endArray();
+        return choices;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
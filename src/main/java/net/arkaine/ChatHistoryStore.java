@@ -0,0 +1,788 @@
+package net.arkaine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Historique persistant des échanges (question, réponse) avec les modèles.
+ *
+ * Sur disque, dans {@code chat.history.dir} (par défaut
+ * {@code ~/.gpt4all-chat/history}) :
+ * <ul>
+ *   <li>{@code segment-NNNNN.log} : journal en ajout seul, découpé en segments
+ *   de {@code chat.history.segment.bytes} octets (64 Mo par défaut) ; chaque
+ *   enregistrement est {@code [int longueur][int crc32][contenu]} ;</li>
+ *   <li>{@code exchanges.idx} : position de chaque échange, 8 octets par
+ *   échange ; lire l'échange n ne coûte qu'une lecture positionnée ;</li>
+ *   <li>{@code terms.idx} : index inversé compacté, projeté en mémoire
+ *   (mmap) : table triée des empreintes de mots, puis listes croissantes
+ *   des échanges qui les contiennent ;</li>
+ *   <li>{@code terms.log} : mots des échanges ajoutés depuis le dernier
+ *   compactage, rechargés en mémoire à l'ouverture et fusionnés dans
+ *   {@code terms.idx} tous les {@link #COMPACTION_THRESHOLD} échanges.</li>
+ * </ul>
+ *
+ * L'ouverture ne lit que les positions et le journal des mots récents, pas
+ * les échanges ; une recherche ne lit que les listes des mots demandés. Un
+ * arrêt brutal est rattrapé à l'ouverture : fin de journal incomplète
+ * tronquée, échanges non indexés réindexés.
+ *
+ * {@link #read} et {@link #size} ne prennent pas le verrou : les positions
+ * sont publiées par le compteur d'échanges et les lectures sont positionnées,
+ * si bien qu'une cellule affichée n'attend jamais une écriture. Le compactage
+ * fusionne un delta gelé hors du verrou et ne le reprend que pour remplacer
+ * l'index projeté.
+ *
+ * La recherche porte sur des mots entiers (lettres et chiffres, deux
+ * caractères au moins, sans distinction de casse) ; tous les mots de la
+ * requête doivent être présents.
+ */
+public class ChatHistoryStore implements AutoCloseable {
+    static final int COMPACTION_THRESHOLD = 4096;
+    private static final int TERMS_MAGIC = 0x43484958; // "CHIX"
+    private static final int TERMS_VERSION = 1;
+    private static final int TERMS_HEADER_BYTES = 16;
+    private static final int TERM_ENTRY_BYTES = 20;
+    private static final int RECORD_HEADER_BYTES = 8;
+    // Position dans l'index : numéro de segment sur les 24 bits de poids fort, position dans le segment ensuite
+    private static final int SEGMENT_SHIFT = 40;
+    private static final long POSITION_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    public static final class Exchange {
+        private final int id;
+        private final long timestamp;
+        private final String model;
+        private final String prompt;
+        private final String reply;
+
+        Exchange(int id, long timestamp, String model, String prompt, String reply) {
+            this.id = id;
+            this.timestamp = timestamp;
+            this.model = model;
+            this.prompt = prompt;
+            this.reply = reply;
+        }
+
+        /** Rang de l'échange, de 0 (le plus ancien) à {@link #size()} - 1. */
+        public int getId() {
+            return id;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public String getPrompt() {
+            return prompt;
+        }
+
+        public String getReply() {
+            return reply;
+        }
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final List<FileChannel> segments = new CopyOnWriteArrayList<>();
+    private final FileChannel offsetIndex;
+    private final FileChannel termLog;
+    // Écrits sous verrou ; count est incrémenté après la position qu'il publie
+    private volatile long[] offsets = new long[1024];
+    private volatile int count;
+    // Index compacté : null tant qu'aucun compactage n'a eu lieu
+    private MappedByteBuffer terms;
+    private int termCount;
+    private Map<Long, IntList> delta = new HashMap<>();
+    private int deltaExchanges;
+    // Delta en cours de fusion hors verrou, consulté par les recherches ; null hors compactage
+    private Map<Long, IntList> compacting;
+    private int indexedCount;
+
+    private ChatHistoryStore(Path directory, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        for (int n = 0; Files.exists(segmentPath(n)); n++) {
+            segments.add(FileChannel.open(segmentPath(n), StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+        if (segments.isEmpty()) {
+            segments.add(openSegment(0));
+        }
+        offsetIndex = FileChannel.open(directory.resolve("exchanges.idx"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        termLog = FileChannel.open(directory.resolve("terms.log"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            loadOffsets();
+            recoverLog();
+            mapTerms();
+            loadTermLog();
+            // Échanges écrits mais pas encore indexés (arrêt entre les deux écritures)
+            for (int id = indexedCount; id < count; id++) {
+                Exchange exchange = read(id);
+                Compaction compaction = index(id, exchange.prompt, exchange.reply);
+                if (compaction != null) {
+                    compaction.run();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static ChatHistoryStore open(Path directory, long segmentBytes) throws IOException {
+        return new ChatHistoryStore(directory, segmentBytes);
+    }
+
+    /** Historique décrit par {@code chat.history.dir} et {@code chat.history.segment.bytes}. */
+    public static ChatHistoryStore defaultStore() throws IOException {
+        String configured = System.getProperty("chat.history.dir");
+        Path directory = configured != null ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".gpt4all-chat", "history");
+        return open(directory, Long.getLong("chat.history.segment.bytes", 64L << 20));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** Enregistre un échange terminé et l'indexe ; renvoie son rang. */
+    public int append(String model, String prompt, String reply) throws IOException {
+        int id;
+        Compaction compaction;
+        synchronized (this) {
+            id = write(model, prompt, reply);
+            compaction = index(id, prompt, reply);
+        }
+        if (compaction != null) {
+            compaction.run();
+        }
+        return id;
+    }
+
+    private int write(String model, String prompt, String reply) throws IOException {
+        byte[] payload = encode(System.currentTimeMillis(), model, prompt, reply);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        FileChannel segment = segments.get(segments.size() - 1);
+        if (segment.size() > 0 && segment.size() + record.remaining() > segmentBytes) {
+            segment = openSegment(segments.size());
+            segments.add(segment);
+        }
+        long position = segment.size();
+        // Pas de force() : un échange perdu à la coupure de courant est rattrapé comme une fin incomplète
+        writeFully(segment, record, position);
+        long offset = ((long) (segments.size() - 1) << SEGMENT_SHIFT) | position;
+        writeFully(offsetIndex, ByteBuffer.allocate(8).putLong(offset).flip(), (long) count * 8);
+        addOffset(offset);
+        return count - 1;
+    }
+
+    public Exchange read(int id) throws IOException {
+        int available = count;
+        if (id < 0 || id >= available) {
+            throw new IndexOutOfBoundsException("Échange " + id + " sur " + available);
+        }
+        ByteBuffer payload = readRecord(offsets[id]);
+        if (payload == null) {
+            throw new IOException("Échange " + id + " illisible dans " + directory);
+        }
+        long timestamp = payload.getLong();
+        return new Exchange(id, timestamp, readString(payload), readString(payload), readString(payload));
+    }
+
+    /**
+     * Rangs des échanges contenant tous les mots de {@code query}, du plus
+     * récent au plus ancien ; vide si la requête ne contient aucun mot
+     * indexable. La plus petite liste sert de base, les autres ne sont
+     * consultées que par recherche dichotomique.
+     */
+    public synchronized int[] search(String query) {
+        long[] hashes = terms(query);
+        if (hashes.length == 0) {
+            return new int[0];
+        }
+        Postings[] lists = new Postings[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            lists[i] = postings(hashes[i]);
+            if (lists[i].size() == 0) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+        int[] result = lists[0].toArray();
+        int n = result.length;
+        for (int i = 1; i < lists.length && n > 0; i++) {
+            int kept = 0;
+            for (int j = 0; j < n; j++) {
+                if (lists[i].contains(result[j])) {
+                    result[kept++] = result[j];
+                }
+            }
+            n = kept;
+        }
+        int[] newestFirst = new int[n];
+        for (int i = 0; i < n; i++) {
+            newestFirst[i] = result[n - 1 - i];
+        }
+        return newestFirst;
+    }
+
+    @Override
+    public synchronized void close() {
+        List<FileChannel> channels = new ArrayList<>(segments);
+        channels.add(offsetIndex);
+        channels.add(termLog);
+        for (FileChannel channel : channels) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                // Fermeture : rien à rattraper
+            }
+        }
+    }
+
+    // --- Journal des échanges ---
+
+    private void loadOffsets() throws IOException {
+        int entries = (int) (offsetIndex.size() / 8);
+        ByteBuffer buffer = ByteBuffer.allocate(entries * 8);
+        readFully(offsetIndex, buffer, 0);
+        buffer.flip();
+        offsets = new long[Math.max(1024, entries)];
+        for (int i = 0; i < entries; i++) {
+            offsets[i] = buffer.getLong();
+        }
+        count = entries;
+    }
+
+    /**
+     * Écarte les derniers échanges indexés mais illisibles, reprend ceux écrits
+     * mais absents de l'index, puis tronque ce qui suit le dernier échange valide.
+     */
+    private void recoverLog() throws IOException {
+        while (count > 0 && readRecord(offsets[count - 1]) == null) {
+            count--;
+        }
+        int segment = count > 0 ? (int) (offsets[count - 1] >>> SEGMENT_SHIFT) : 0;
+        long position = count > 0 ? recordEnd(offsets[count - 1]) : 0;
+        int indexed = count;
+        while (true) {
+            long offset = ((long) segment << SEGMENT_SHIFT) | position;
+            if (position < segments.get(segment).size() && readRecord(offset) != null) {
+                addOffset(offset);
+                position = recordEnd(offset);
+            } else if (position >= segments.get(segment).size() && segment + 1 < segments.size()) {
+                segment++;
+                position = 0;
+            } else {
+                break;
+            }
+        }
+        segments.get(segment).truncate(position);
+        while (segments.size() > segment + 1) {
+            segments.remove(segments.size() - 1).close();
+            Files.delete(segmentPath(segments.size()));
+        }
+        if (offsetIndex.size() != (long) count * 8 || count != indexed) {
+            ByteBuffer buffer = ByteBuffer.allocate((count - indexed) * 8);
+            for (int i = indexed; i < count; i++) {
+                buffer.putLong(offsets[i]);
+            }
+            offsetIndex.truncate((long) indexed * 8);
+            writeFully(offsetIndex, buffer.flip(), (long) indexed * 8);
+        }
+    }
+
+    /** Contenu de l'enregistrement, ou null s'il est incomplet ou corrompu. */
+    private ByteBuffer readRecord(long offset) throws IOException {
+        int segment = (int) (offset >>> SEGMENT_SHIFT);
+        if (segment >= segments.size()) {
+            return null;
+        }
+        FileChannel channel = segments.get(segment);
+        long position = offset & POSITION_MASK;
+        if (position + RECORD_HEADER_BYTES > channel.size()) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(channel, header, position);
+        header.flip();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length < 0 || position + RECORD_HEADER_BYTES + length > channel.size()) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, position + RECORD_HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        return (int) crc.getValue() == checksum ? payload.flip() : null;
+    }
+
+    private long recordEnd(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        long position = offset & POSITION_MASK;
+        readFully(segments.get((int) (offset >>> SEGMENT_SHIFT)), header, position);
+        return position + RECORD_HEADER_BYTES + header.flip().getInt();
+    }
+
+    private void addOffset(long offset) {
+        long[] values = offsets;
+        if (count == values.length) {
+            values = Arrays.copyOf(values, count * 2);
+            offsets = values;
+        }
+        values[count] = offset;
+        count++;
+    }
+
+    private Path segmentPath(int n) {
+        return directory.resolve(String.format("segment-%05d.log", n));
+    }
+
+    private FileChannel openSegment(int n) throws IOException {
+        return FileChannel.open(segmentPath(n), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private static byte[] encode(long timestamp, String model, String prompt, String reply) {
+        byte[][] strings = {utf8(model), utf8(prompt), utf8(reply)};
+        int length = 8;
+        for (byte[] string : strings) {
+            length += 4 + string.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).putLong(timestamp);
+        for (byte[] string : strings) {
+            buffer.putInt(string.length).put(string);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] utf8(String text) {
+        return (text == null ? "" : text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        String text = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+
+    // --- Index inversé ---
+
+    /** Empreintes triées et sans doublon des mots des textes. */
+    static long[] terms(String... texts) {
+        long[] hashes = new long[64];
+        int n = 0;
+        StringBuilder token = new StringBuilder();
+        for (String text : texts) {
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i < text.length() ? text.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    // Mots démesurés (base64, hachages) : seul le début compte
+                    if (token.length() < MAX_TOKEN_LENGTH) {
+                        token.append(Character.toLowerCase(c));
+                    }
+                } else if (token.length() > 0) {
+                    if (token.length() >= 2) {
+                        if (n == hashes.length) {
+                            hashes = Arrays.copyOf(hashes, n * 2);
+                        }
+                        hashes[n++] = HashedStringSet.hash(token);
+                    }
+                    token.setLength(0);
+                }
+            }
+        }
+        Arrays.sort(hashes, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || hashes[unique - 1] != hashes[i]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+        return Arrays.copyOf(hashes, unique);
+    }
+
+    /** Journalise les mots de l'échange ; renvoie le compactage à lancer hors verrou, s'il est dû. */
+    private Compaction index(int id, String prompt, String reply) throws IOException {
+        long[] hashes = terms(prompt, reply);
+        ByteBuffer record = ByteBuffer.allocate(8 + hashes.length * 8).putInt(id).putInt(hashes.length);
+        for (long hash : hashes) {
+            record.putLong(hash);
+        }
+        writeFully(termLog, record.flip(), termLog.size());
+        addToDelta(id, hashes);
+        if (deltaExchanges < COMPACTION_THRESHOLD || compacting != null) {
+            return null;
+        }
+        Compaction compaction = new Compaction(terms, termCount, delta, deltaExchanges, indexedCount,
+                termLog.size());
+        compacting = delta;
+        delta = new HashMap<>();
+        deltaExchanges = 0;
+        return compaction;
+    }
+
+    private void addToDelta(int id, long[] hashes) {
+        for (long hash : hashes) {
+            delta.computeIfAbsent(hash, h -> new IntList()).add(id);
+        }
+        deltaExchanges++;
+        indexedCount = id + 1;
+    }
+
+    private void mapTerms() throws IOException {
+        Path file = directory.resolve("terms.idx");
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < TERMS_HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                return;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != TERMS_MAGIC || mapped.getInt(4) != TERMS_VERSION
+                    || mapped.getInt(8) > count) {
+                // Format inconnu ou index d'un journal plus long : tout est réindexé
+                return;
+            }
+            terms = mapped;
+            indexedCount = mapped.getInt(8);
+            termCount = mapped.getInt(12);
+        }
+    }
+
+    private void loadTermLog() throws IOException {
+        long size = termLog.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position + 8 <= size) {
+            header.clear();
+            readFully(termLog, header, position);
+            header.flip();
+            int id = header.getInt();
+            int n = header.getInt();
+            if (n < 0 || position + 8 + n * 8L > size) {
+                break;
+            }
+            if (id >= indexedCount) {
+                if (id != indexedCount || id >= count) {
+                    // Trou ou échange perdu à la reprise : la suite sera réindexée depuis le journal
+                    break;
+                }
+                ByteBuffer body = ByteBuffer.allocate(n * 8);
+                readFully(termLog, body, position + 8);
+                body.flip();
+                long[] hashes = new long[n];
+                for (int i = 0; i < n; i++) {
+                    hashes[i] = body.getLong();
+                }
+                addToDelta(id, hashes);
+            }
+            // Rangs déjà compactés (arrêt avant la remise à zéro du journal) : ignorés
+            position += 8 + n * 8L;
+        }
+        termLog.truncate(position);
+    }
+
+    /**
+     * Fusion d'un delta gelé avec l'index projeté courant. Les deux ne changent
+     * plus : le nouveau {@code terms.idx} est écrit hors verrou, à côté puis
+     * renommé, et seul l'échange des index se fait sous verrou.
+     */
+    private final class Compaction {
+        private final MappedByteBuffer base;
+        private final int baseCount;
+        private final Map<Long, IntList> frozen;
+        private final int exchanges;
+        private final int indexed;
+        private final long logSize;
+
+        Compaction(MappedByteBuffer base, int baseCount, Map<Long, IntList> frozen, int exchanges, int indexed,
+                   long logSize) {
+            this.base = base;
+            this.baseCount = baseCount;
+            this.frozen = frozen;
+            this.exchanges = exchanges;
+            this.indexed = indexed;
+            this.logSize = logSize;
+        }
+
+        void run() throws IOException {
+            MappedByteBuffer merged;
+            try {
+                merged = writeIndex();
+            } catch (IOException | RuntimeException e) {
+                synchronized (ChatHistoryStore.this) {
+                    // Delta rendu tel quel : le prochain échange retentera la fusion
+                    for (Map.Entry<Long, IntList> entry : delta.entrySet()) {
+                        frozen.computeIfAbsent(entry.getKey(), h -> new IntList()).addAll(entry.getValue());
+                    }
+                    deltaExchanges += exchanges;
+                    delta = frozen;
+                    compacting = null;
+                }
+                throw e;
+            }
+            synchronized (ChatHistoryStore.this) {
+                terms = merged;
+                termCount = merged.getInt(12);
+                compacting = null;
+                dropCompactedLog();
+            }
+        }
+
+        private MappedByteBuffer writeIndex() throws IOException {
+            long[] deltaHashes = new long[frozen.size()];
+            int d = 0;
+            for (long hash : frozen.keySet()) {
+                deltaHashes[d++] = hash;
+            }
+            Arrays.sort(deltaHashes);
+
+            int merged = 0;
+            for (int i = 0, j = 0; i < baseCount || j < deltaHashes.length; merged++) {
+                int order = compareNext(i, j, deltaHashes);
+                i += order <= 0 ? 1 : 0;
+                j += order >= 0 ? 1 : 0;
+            }
+
+            Path file = directory.resolve("terms.idx");
+            Path tmp = Files.createTempFile(directory, ".terms", ".tmp");
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                            Channels.newOutputStream(channel), 1 << 16));
+                    out.writeInt(TERMS_MAGIC);
+                    out.writeInt(TERMS_VERSION);
+                    out.writeInt(indexed);
+                    out.writeInt(merged);
+                    long postingsOffset = TERMS_HEADER_BYTES + (long) merged * TERM_ENTRY_BYTES;
+                    for (int i = 0, j = 0; i < baseCount || j < deltaHashes.length; ) {
+                        int order = compareNext(i, j, deltaHashes);
+                        long hash = order <= 0 ? termHash(base, i) : deltaHashes[j];
+                        int size = (order <= 0 ? termSize(base, i) : 0)
+                                + (order >= 0 ? frozen.get(deltaHashes[j]).size : 0);
+                        out.writeLong(hash);
+                        out.writeLong(postingsOffset);
+                        out.writeInt(size);
+                        postingsOffset += size * 4L;
+                        i += order <= 0 ? 1 : 0;
+                        j += order >= 0 ? 1 : 0;
+                    }
+                    // Les rangs du delta suivent tous ceux de l'index : la concaténation reste triée
+                    for (int i = 0, j = 0; i < baseCount || j < deltaHashes.length; ) {
+                        int order = compareNext(i, j, deltaHashes);
+                        if (order <= 0) {
+                            int start = termStart(base, i);
+                            for (int k = 0; k < termSize(base, i); k++) {
+                                out.writeInt(base.getInt(start + k * 4));
+                            }
+                            i++;
+                        }
+                        if (order >= 0) {
+                            IntList ids = frozen.get(deltaHashes[j]);
+                            for (int k = 0; k < ids.size; k++) {
+                                out.writeInt(ids.values[k]);
+                            }
+                            j++;
+                        }
+                    }
+                    out.flush();
+                    channel.force(true);
+                    if (channel.size() > Integer.MAX_VALUE) {
+                        throw new IOException("Index de l'historique trop volumineux");
+                    }
+                }
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+
+        /**
+         * Retire du journal des mots ce qui vient d'être compacté. Les mots
+         * ajoutés pendant la fusion sont ramenés en tête ; une coupure pendant
+         * cette recopie les fait réindexer depuis le journal des échanges.
+         */
+        private void dropCompactedLog() throws IOException {
+            ByteBuffer tail = ByteBuffer.allocate((int) (termLog.size() - logSize));
+            readFully(termLog, tail, logSize);
+            writeFully(termLog, tail.flip(), 0);
+            termLog.truncate(tail.limit());
+        }
+
+        /** Ordre du prochain terme de l'index (i) par rapport au prochain du delta (j) ; un côté épuisé passe après. */
+        private int compareNext(int i, int j, long[] deltaHashes) {
+            if (i >= baseCount) {
+                return 1;
+            }
+            if (j >= deltaHashes.length) {
+                return -1;
+            }
+            return Long.compare(termHash(base, i), deltaHashes[j]);
+        }
+    }
+
+    private static long termHash(ByteBuffer terms, int i) {
+        return terms.getLong(TERMS_HEADER_BYTES + i * TERM_ENTRY_BYTES);
+    }
+
+    private static int termStart(ByteBuffer terms, int i) {
+        return (int) terms.getLong(TERMS_HEADER_BYTES + i * TERM_ENTRY_BYTES + 8);
+    }
+
+    private static int termSize(ByteBuffer terms, int i) {
+        return terms.getInt(TERMS_HEADER_BYTES + i * TERM_ENTRY_BYTES + 16);
+    }
+
+    private Postings postings(long hash) {
+        int low = 0;
+        int high = termCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = termHash(terms, mid);
+            if (value < hash) {
+                low = mid + 1;
+            } else if (value > hash) {
+                high = mid - 1;
+            } else {
+                found = mid;
+                break;
+            }
+        }
+        IntList recent = delta.get(hash);
+        IntList merging = compacting != null ? compacting.get(hash) : null;
+        if (merging != null) {
+            // Rangs en cours de fusion, tous antérieurs à ceux du delta
+            IntList both = new IntList();
+            both.addAll(merging);
+            if (recent != null) {
+                both.addAll(recent);
+            }
+            recent = both;
+        }
+        return new Postings(found >= 0 ? termStart(terms, found) : 0, found >= 0 ? termSize(terms, found) : 0,
+                recent);
+    }
+
+    /** Liste d'un mot : partie projetée de l'index puis partie des deltas, toutes deux croissantes. */
+    private final class Postings {
+        private final int start;
+        private final int mappedSize;
+        private final IntList recent;
+
+        Postings(int start, int mappedSize, IntList recent) {
+            this.start = start;
+            this.mappedSize = mappedSize;
+            this.recent = recent;
+        }
+
+        int size() {
+            return mappedSize + (recent != null ? recent.size : 0);
+        }
+
+        int[] toArray() {
+            int[] ids = new int[size()];
+            for (int k = 0; k < mappedSize; k++) {
+                ids[k] = terms.getInt(start + k * 4);
+            }
+            if (recent != null) {
+                System.arraycopy(recent.values, 0, ids, mappedSize, recent.size);
+            }
+            return ids;
+        }
+
+        boolean contains(int id) {
+            if (recent != null && recent.size > 0 && id >= recent.values[0]) {
+                return Arrays.binarySearch(recent.values, 0, recent.size, id) >= 0;
+            }
+            int low = 0;
+            int high = mappedSize - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int value = terms.getInt(start + mid * 4);
+                if (value < id) {
+                    low = mid + 1;
+                } else if (value > id) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Fin de fichier inattendue");
+            }
+            position += n;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.arkaine;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fenêtre de l'historique : liste des échanges du plus récent au plus
+ * ancien, filtrée par la recherche plein texte de {@link ChatHistoryStore}.
+ *
+ * La liste ne contient que des rangs ; chaque cellule visible lit son
+ * échange à l'affichage, si bien qu'ouvrir un historique de cent mille
+ * échanges ne lit qu'un écran d'enregistrements. Ces lectures ne prennent
+ * pas le verrou de l'historique : un enregistrement ou un compactage en
+ * cours ne fige pas le défilement.
+ */
+public class ChatHistoryWindow {
+    private static final int SUMMARY_CHARS = 120;
+
+    /** Rangs affichés, sans aucun objet par échange. Jamais modifiée : une recherche en remplace une autre. */
+    private static final class IdList extends ObservableListBase<Integer> {
+        private final int[] ids;
+        private final int size;
+
+        /** Tous les échanges, du plus récent au plus ancien. */
+        IdList(int count) {
+            this.ids = null;
+            this.size = count;
+        }
+
+        IdList(int[] ids) {
+            this.ids = ids;
+            this.size = ids.length;
+        }
+
+        @Override
+        public Integer get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return ids != null ? ids[index] : size - 1 - index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private final ChatHistoryStore store;
+    private final Executor executor;
+    private final ListView<Integer> list = new ListView<>();
+    private final TranscriptView detail = new TranscriptView();
+    private final Label status = new Label();
+    // Chaque frappe incrémente le compteur : les recherches périmées ne sont pas affichées
+    private final AtomicLong searchGeneration = new AtomicLong();
+
+    /**
+     * @param executor exécuteur des écritures de l'historique : les recherches
+     *                 passent après les échanges en cours d'enregistrement
+     */
+    public ChatHistoryWindow(ChatHistoryStore store, Executor executor) {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    public void show() {
+        TextField searchField = new TextField();
+        searchField.setPromptText("Rechercher dans l'historique (mots entiers)");
+        searchField.textProperty().addListener((obs, oldText, newText) -> search(newText));
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+
+        // Hauteur fixe : aucune mesure des lignes hors de l'écran
+        list.setFixedCellSize(24);
+        list.setCellFactory(view -> new ExchangeCell());
+        list.getSelectionModel().selectedItemProperty().addListener((obs, oldId, id) -> showExchange(id));
+        detail.setPromptText("Sélectionnez un échange");
+
+        showAll();
+        SplitPane split = new SplitPane(list, detail);
+        split.setDividerPositions(0.4);
+        VBox.setVgrow(split, Priority.ALWAYS);
+        VBox root = new VBox(10, new HBox(10, searchField, status), split);
+        root.setPadding(new Insets(10));
+
+        Stage stage = new Stage();
+        stage.setTitle("Historique des conversations");
+        stage.setScene(new Scene(root, 900, 600));
+        stage.show();
+    }
+
+    private void showAll() {
+        int count = store.size();
+        list.setItems(new IdList(count));
+        status.setText(count + " échange(s)");
+    }
+
+    private void search(String query) {
+        long generation = searchGeneration.incrementAndGet();
+        if (query.isBlank()) {
+            showAll();
+            return;
+        }
+        executor.execute(() -> {
+            if (generation != searchGeneration.get()) {
+                return;
+            }
+            long start = System.nanoTime();
+            int[] ids = store.search(query);
+            double elapsedMs = (System.nanoTime() - start) / 1e6;
+            Platform.runLater(() -> {
+                if (generation == searchGeneration.get()) {
+                    list.setItems(new IdList(ids));
+                    status.setText(String.format("%d échange(s) en %.1f ms", ids.length, elapsedMs));
+                }
+            });
+        });
+    }
+
+    private void showExchange(Integer id) {
+        if (id == null) {
+            detail.clear();
+            return;
+        }
+        try {
+            ChatHistoryStore.Exchange exchange = store.read(id);
+            detail.setText(date(exchange) + " — " + exchange.getModel() + "\n\nQuestion :\n" + exchange.getPrompt()
+                    + "\n\nRéponse :\n" + exchange.getReply());
+        } catch (IOException e) {
+            detail.setText("Échange illisible : " + e.getMessage());
+        }
+    }
+
+    private static String date(ChatHistoryStore.Exchange exchange) {
+        return new SimpleDateFormat("dd/MM/yyyy HH:mm").format(new Date(exchange.getTimestamp()));
+    }
+
+    /** Date, modèle et début de la question, lus à l'affichage de la cellule. */
+    private final class ExchangeCell extends ListCell<Integer> {
+        @Override
+        protected void updateItem(Integer id, boolean empty) {
+            super.updateItem(id, empty);
+            if (empty || id == null) {
+                setText(null);
+                return;
+            }
+            try {
+                ChatHistoryStore.Exchange exchange = store.read(id);
+                String prompt = exchange.getPrompt().replace('\n', ' ').trim();
+                if (prompt.length() > SUMMARY_CHARS) {
+                    prompt = prompt.substring(0, SUMMARY_CHARS) + "…";
+                }
+                setText(date(exchange) + "  " + exchange.getModel() + "  " + prompt);
+            } catch (IOException e) {
+                setText("Échange " + id + " illisible");
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package net.arkaine;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clients HTTP vers le serveur local, configurables par propriétés système.
+ *
+ * Tous partagent un même pool de connexions keep-alive et un même dispatcher ;
+ * seuls les délais changent selon l'opération. Une génération peut rester
+ * longtemps silencieuse avant son premier token, d'où un délai de lecture
+ * long pour les complétions et court pour la liste des modèles.
+ *
+ * OkHttp ne pipeline pas les requêtes HTTP/1.1 : le parallélisme passe par
+ * plusieurs connexions du pool, ou par h2c ({@code -Dchat.http.h2c=true})
+ * si le serveur accepte HTTP/2 sans TLS.
+ *
+ * Les requêtes sont réparties entre les instances de {@link EndpointPool}
+ * ({@code -Dchat.endpoints=...}).
+ */
+public final class ChatHttpClients {
+    private static final OkHttpClient BASE = createBase();
+    // Contrôles de santé : adressés à une instance précise, donc hors du pool
+    private static final OkHttpClient HEALTH = BASE.newBuilder()
+            .callTimeout(seconds("chat.endpoints.health.timeout", 5), TimeUnit.SECONDS)
+            .build();
+    private static final EndpointPool ENDPOINTS = EndpointPool.fromProperties(HEALTH);
+    private static final OkHttpClient MODELS = BASE.newBuilder()
+            .addInterceptor(ENDPOINTS)
+            .readTimeout(seconds("chat.http.models.timeout", 10), TimeUnit.SECONDS)
+            .callTimeout(seconds("chat.http.models.timeout", 10), TimeUnit.SECONDS)
+            .build();
+    private static final OkHttpClient COMPLETIONS = BASE.newBuilder()
+            .addInterceptor(ENDPOINTS)
+            // Délai entre deux octets reçus, pas durée totale de la génération
+            .readTimeout(seconds("chat.http.read.timeout", 300), TimeUnit.SECONDS)
+            .writeTimeout(seconds("chat.http.write.timeout", 30), TimeUnit.SECONDS)
+            .build();
+
+    private ChatHttpClients() {
+    }
+
+    private static OkHttpClient createBase() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Integer.getInteger("chat.http.max.requests", 64));
+        dispatcher.setMaxRequestsPerHost(Integer.getInteger("chat.http.max.requests.per.host", 8));
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(
+                        Integer.getInteger("chat.http.pool.idle", 8),
+                        seconds("chat.http.pool.keepalive", 300), TimeUnit.SECONDS))
+                .connectTimeout(seconds("chat.http.connect.timeout", 5), TimeUnit.SECONDS)
+                .eventListenerFactory(RequestMetrics.LISTENER_FACTORY)
+                .retryOnConnectionFailure(true);
+        if (Boolean.getBoolean("chat.http.h2c")) {
+            builder.protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+        }
+        return builder.build();
+    }
+
+    private static long seconds(String property, long defaultSeconds) {
+        return Long.getLong(property, defaultSeconds);
+    }
+
+    /** Instances du serveur local entre lesquelles les requêtes sont réparties. */
+    public static EndpointPool endpoints() {
+        return ENDPOINTS;
+    }
+
+    /** Requêtes courtes : liste des modèles, vérifications. */
+    public static OkHttpClient models() {
+        return MODELS;
+    }
+
+    /** Complétions, en streaming ou non. */
+    public static OkHttpClient completions() {
+        return COMPLETIONS;
+    }
+
+    /** Adresse des complétions sur la première instance ; {@link EndpointPool} redirige vers la moins chargée. */
+    public static String completionsUrl() {
+        return ENDPOINTS.primary().resolve("/v1/chat/completions").toString();
+    }
+}
@@ -0,0 +1,173 @@
+package net.arkaine;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistiques côté client des requêtes de complétion : percentiles par
+ * modèle et historique des dernières requêtes, exportables en CSV (une ligne
+ * par requête) ou en JSON (synthèse par modèle). Thread-safe.
+ */
+public class ChatMetrics {
+    private static final int MAX_RECORDS = Integer.getInteger("chat.metrics.history", 10_000);
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /** Histogrammes d'un modèle ; les durées en microsecondes, le débit en centièmes de token/s. */
+    private static final class ModelStats {
+        final LatencyHistogram connect = new LatencyHistogram();
+        final LatencyHistogram firstByte = new LatencyHistogram();
+        final LatencyHistogram firstToken = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+        final LatencyHistogram tokensPerSecond = new LatencyHistogram();
+        long promptTokens;
+        long completionTokens;
+        long errors;
+    }
+
+    private final Map<String, ModelStats> models = new TreeMap<>();
+    private final Deque<RequestMetrics> records = new ArrayDeque<>();
+
+    public synchronized void record(RequestMetrics metrics) {
+        ModelStats stats = models.computeIfAbsent(metrics.getModel(), k -> new ModelStats());
+        records.addLast(metrics);
+        if (records.size() > MAX_RECORDS) {
+            records.removeFirst();
+        }
+        if (!"ok".equals(metrics.getOutcome())) {
+            stats.errors++;
+            return;
+        }
+        recordMicros(stats.connect, metrics.getConnectNanos());
+        recordMicros(stats.firstByte, metrics.getFirstByteNanos());
+        recordMicros(stats.firstToken, metrics.getFirstTokenNanos());
+        recordMicros(stats.total, metrics.getTotalNanos());
+        double rate = metrics.tokensPerSecond();
+        if (rate >= 0) {
+            stats.tokensPerSecond.record(Math.round(rate * 100));
+        }
+        stats.promptTokens += Math.max(0, metrics.getPromptTokens());
+        stats.completionTokens += Math.max(0, metrics.getCompletionTokens());
+    }
+
+    private static void recordMicros(LatencyHistogram histogram, long nanos) {
+        if (nanos >= 0) {
+            histogram.record(nanos / 1_000);
+        }
+    }
+
+    /** Résumé lisible pour le panneau de statistiques. */
+    public synchronized String summary() {
+        if (models.isEmpty()) {
+            return "Aucune requête mesurée.";
+        }
+        StringBuilder text = new StringBuilder();
+        models.forEach((model, stats) -> {
+            text.append(model).append(" : ").append(stats.total.getTotalCount()).append(" requête(s)");
+            if (stats.errors > 0) {
+                text.append(", ").append(stats.errors).append(" erreur(s)");
+            }
+            text.append('\n');
+            text.append("  1er octet   ").append(millis(stats.firstByte)).append('\n');
+            text.append("  1er token   ").append(millis(stats.firstToken)).append('\n');
+            text.append("  total       ").append(millis(stats.total)).append('\n');
+            text.append(String.format("  débit       p50 %.1f tokens/s, %d tokens générés%n",
+                    stats.tokensPerSecond.percentile(50) / 100.0, stats.completionTokens));
+        });
+        return text.toString();
+    }
+
+    private static String millis(LatencyHistogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("p50 %d ms, p90 %d ms, p99 %d ms, max %d ms",
+                histogram.percentile(50) / 1000, histogram.percentile(90) / 1000,
+                histogram.percentile(99) / 1000, histogram.getMax() / 1000);
+    }
+
+    /** Une ligne par requête de l'historique. */
+    public void exportCsv(Path file) throws IOException {
+        List<RequestMetrics> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(records);
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("timestamp,model,outcome,dns_ms,connect_ms,ttfb_ms,ttft_ms,total_ms,"
+                    + "prompt_tokens,completion_tokens,tokens_per_s\n");
+            for (RequestMetrics m : snapshot) {
+                out.write(String.join(",",
+                        Instant.ofEpochMilli(m.getStartEpochMillis()).toString(),
+                        csv(m.getModel()),
+                        csv(m.getOutcome()),
+                        ms(m.getDnsNanos()),
+                        ms(m.getConnectNanos()),
+                        ms(m.getFirstByteNanos()),
+                        ms(m.getFirstTokenNanos()),
+                        ms(m.getTotalNanos()),
+                        m.getPromptTokens() >= 0 ? String.valueOf(m.getPromptTokens()) : "",
+                        m.getCompletionTokens() >= 0 ? String.valueOf(m.getCompletionTokens()) : "",
+                        m.tokensPerSecond() >= 0 ? String.format(Locale.ROOT, "%.2f", m.tokensPerSecond()) : ""));
+                out.write('\n');
+            }
+        }
+    }
+
+    private static String ms(long nanos) {
+        return nanos >= 0 ? String.format(Locale.ROOT, "%.3f", nanos / 1e6) : "";
+    }
+
+    private static String csv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    /** Synthèse par modèle : percentiles en millisecondes. */
+    public void exportJson(Path file) throws IOException {
+        JsonArray array = new JsonArray();
+        synchronized (this) {
+            models.forEach((model, stats) -> {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("model", model);
+                entry.addProperty("requests", stats.total.getTotalCount());
+                entry.addProperty("errors", stats.errors);
+                entry.addProperty("prompt_tokens", stats.promptTokens);
+                entry.addProperty("completion_tokens", stats.completionTokens);
+                entry.add("connect_ms", percentiles(stats.connect, 1000.0));
+                entry.add("ttfb_ms", percentiles(stats.firstByte, 1000.0));
+                entry.add("ttft_ms", percentiles(stats.firstToken, 1000.0));
+                entry.add("total_ms", percentiles(stats.total, 1000.0));
+                entry.add("tokens_per_s", percentiles(stats.tokensPerSecond, 100.0));
+                array.add(entry);
+            });
+        }
+        Files.writeString(file, new GsonBuilder().setPrettyPrinting().create().toJson(array), StandardCharsets.UTF_8);
+    }
+
+    private static JsonObject percentiles(LatencyHistogram histogram, double divisor) {
+        JsonObject object = new JsonObject();
+        object.addProperty("count", histogram.getTotalCount());
+        object.addProperty("mean", histogram.getMean() / divisor);
+        for (double p : PERCENTILES) {
+            object.addProperty("p" + (int) p, histogram.percentile(p) / divisor);
+        }
+        object.addProperty("max", histogram.getMax() / divisor);
+        return object;
+    }
+}
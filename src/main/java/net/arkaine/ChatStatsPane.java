@@ -0,0 +1,74 @@
+package net.arkaine;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TitledPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Panneau repliable des statistiques de {@link ChatMetrics}, avec export
+ * CSV et JSON. Le résumé n'est recalculé que lorsque le panneau est ouvert.
+ */
+public class ChatStatsPane extends TitledPane {
+    private final ChatMetrics metrics;
+    private final TextArea summary = new TextArea();
+
+    public ChatStatsPane(ChatMetrics metrics) {
+        this.metrics = metrics;
+        setText("Statistiques");
+        setExpanded(false);
+        summary.setEditable(false);
+        summary.setPrefRowCount(8);
+        summary.setStyle("-fx-font-family: monospace;");
+
+        Button csvButton = new Button("Exporter CSV");
+        csvButton.setOnAction(e -> export("CSV", "*.csv", "chat-metrics.csv"));
+        Button jsonButton = new Button("Exporter JSON");
+        jsonButton.setOnAction(e -> export("JSON", "*.json", "chat-metrics.json"));
+
+        setContent(new VBox(5, summary, new HBox(10, csvButton, jsonButton)));
+        expandedProperty().addListener((obs, wasExpanded, expanded) -> refresh());
+    }
+
+    /** Peut être appelé depuis n'importe quel thread. */
+    public void refresh() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::refresh);
+            return;
+        }
+        if (isExpanded()) {
+            summary.setText(metrics.summary());
+        }
+    }
+
+    private void export(String format, String extension, String defaultName) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Exporter les statistiques");
+        chooser.setInitialFileName(defaultName);
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(format, extension));
+        File file = chooser.showSaveDialog(getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        try {
+            if ("CSV".equals(format)) {
+                metrics.exportCsv(file.toPath());
+            } else {
+                metrics.exportJson(file.toPath());
+            }
+        } catch (IOException e) {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Erreur");
+            alert.setHeaderText(null);
+            alert.setContentText("Export impossible : " + e.getMessage());
+            alert.showAndWait();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package net.arkaine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Lecture d'un corps "server-sent events" renvoyé par /v1/chat/completions
+ * avec {@code "stream": true}. Chaque événement {@code data: {...}} est lu
+ * dès qu'il arrive sur la socket et son delta est transmis immédiatement.
+ */
+public class ChatStreamReader {
+    private static final String DATA_PREFIX = "data:";
+    private static final String DONE = "[DONE]";
+
+    private int chunkCount;
+    private String finishReason;
+    private int promptTokens = -1;
+    private int completionTokens = -1;
+
+    /**
+     * Lit la source jusqu'à {@code [DONE]} ou la fin du flux.
+     *
+     * @return le texte complet de la réponse
+     */
+    public String read(BufferedSource source, Consumer<String> onDelta) throws IOException {
+        StringBuilder full = new StringBuilder();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!line.startsWith(DATA_PREFIX)) {
+                // Lignes vides (séparateurs d'événements), commentaires ":" ou champs non utilisés
+                continue;
+            }
+            String data = line.substring(DATA_PREFIX.length()).trim();
+            if (DONE.equals(data)) {
+                break;
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+            chunkCount++;
+            String delta = extractDelta(JsonParser.parseString(data).getAsJsonObject());
+            if (delta != null && !delta.isEmpty()) {
+                full.append(delta);
+                onDelta.accept(delta);
+            }
+        }
+        return full.toString();
+    }
+
+    private String extractDelta(JsonObject event) {
+        // Certains serveurs joignent le bloc usage au dernier événement
+        JsonElement usage = event.get("usage");
+        if (usage != null && usage.isJsonObject()) {
+            JsonObject counts = usage.getAsJsonObject();
+            if (counts.has("prompt_tokens")) {
+                promptTokens = counts.get("prompt_tokens").getAsInt();
+            }
+            if (counts.has("completion_tokens")) {
+                completionTokens = counts.get("completion_tokens").getAsInt();
+            }
+        }
+        JsonArray choices = event.getAsJsonArray("choices");
+        if (choices == null || choices.size() == 0) {
+            return null;
+        }
+        JsonObject choice = choices.get(0).getAsJsonObject();
+        JsonElement reason = choice.get("finish_reason");
+        if (reason != null && !reason.isJsonNull()) {
+            finishReason = reason.getAsString();
+        }
+        // Format OpenAI : "delta", certains serveurs renvoient "message" ou "text"
+        JsonObject delta = choice.has("delta") ? choice.getAsJsonObject("delta") : choice.getAsJsonObject("message");
+        JsonElement content = delta != null ? delta.get("content") : choice.get("text");
+        return content != null && !content.isJsonNull() ? content.getAsString() : null;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    /** @return le nombre de tokens du prompt annoncé par le serveur, ou -1 */
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    /** @return le nombre de tokens générés annoncé par le serveur, ou -1 */
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+}
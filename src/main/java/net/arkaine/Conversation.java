@@ -0,0 +1,174 @@
+package net.arkaine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Historique d'une conversation avec le modèle.
+ *
+ * Chaque message garde une estimation de son nombre de tokens, calculée une
+ * seule fois. À l'envoi, seuls les tours les plus récents qui tiennent dans le
+ * budget de contexte du modèle sont transmis ; les plus anciens sont remplacés
+ * par un court résumé de taille bornée. La taille de la requête reste ainsi
+ * constante quelle que soit la durée de la session.
+ */
+public class Conversation {
+    /** Surcoût approximatif du formatage d'un message (rôle, séparateurs). */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+    private static final int SUMMARY_EXCERPT_CHARS = 80;
+
+    public static final class Message {
+        private final String role;
+        private final String content;
+        private final int tokens;
+
+        Message(String role, String content) {
+            this.role = role;
+            this.content = content;
+            this.tokens = estimateTokens(content) + MESSAGE_OVERHEAD_TOKENS;
+        }
+
+        public String getRole() {
+            return role;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+    }
+
+    /** Messages effectivement retenus pour une requête. */
+    public static final class Window {
+        private final JsonArray messages;
+        private final int tokens;
+        private final int droppedTurns;
+
+        Window(JsonArray messages, int tokens, int droppedTurns) {
+            this.messages = messages;
+            this.tokens = tokens;
+            this.droppedTurns = droppedTurns;
+        }
+
+        public JsonArray getMessages() {
+            return messages;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+
+        public int getDroppedTurns() {
+            return droppedTurns;
+        }
+    }
+
+    private final List<Message> messages = new ArrayList<>();
+
+    /**
+     * Estimation grossière, sans tokenizer : environ quatre caractères par
+     * token pour du texte latin, un par caractère hors ASCII (CJK, emoji).
+     */
+    public static int estimateTokens(String text) {
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /** Enregistre un tour terminé : la question et la réponse du modèle. */
+    public void addTurn(String prompt, String reply) {
+        messages.add(new Message("user", prompt));
+        messages.add(new Message("assistant", reply));
+    }
+
+    public void clear() {
+        messages.clear();
+    }
+
+    public int getMessageCount() {
+        return messages.size();
+    }
+
+    /**
+     * Construit la liste de messages pour {@code prompt}, en gardant les tours
+     * les plus récents qui tiennent dans {@code budgetTokens}. Le nouveau
+     * prompt est toujours inclus, même s'il dépasse seul le budget.
+     */
+    public Window window(String prompt, int budgetTokens) {
+        Message current = new Message("user", prompt);
+        int used = current.tokens;
+
+        // Parcours à rebours par tours complets (question + réponse)
+        int first = messages.size();
+        while (first >= 2) {
+            int turnTokens = messages.get(first - 2).tokens + messages.get(first - 1).tokens;
+            if (used + turnTokens > budgetTokens) {
+                break;
+            }
+            used += turnTokens;
+            first -= 2;
+        }
+
+        JsonArray array = new JsonArray();
+        int droppedTurns = first / 2;
+        if (droppedTurns > 0) {
+            Message summary = summarize(first, budgetTokens - used);
+            if (summary != null) {
+                array.add(toJson(summary));
+                used += summary.tokens;
+            }
+        }
+        for (int i = first; i < messages.size(); i++) {
+            array.add(toJson(messages.get(i)));
+        }
+        array.add(toJson(current));
+        return new Window(array, used, droppedTurns);
+    }
+
+    /**
+     * Résumé extractif des tours écartés : le début des questions les plus
+     * récentes parmi eux, dans la place restante du budget.
+     */
+    private Message summarize(int end, int availableTokens) {
+        String header = "Résumé des échanges précédents, questions posées :";
+        int remaining = availableTokens - estimateTokens(header) - MESSAGE_OVERHEAD_TOKENS;
+        List<String> excerpts = new ArrayList<>();
+        for (int i = end - 2; i >= 0 && remaining > 0; i -= 2) {
+            String question = messages.get(i).content.replace('\n', ' ').trim();
+            if (question.length() > SUMMARY_EXCERPT_CHARS) {
+                question = question.substring(0, SUMMARY_EXCERPT_CHARS) + "…";
+            }
+            String line = "\n- " + question;
+            int cost = estimateTokens(line);
+            if (cost > remaining) {
+                break;
+            }
+            excerpts.add(0, line);
+            remaining -= cost;
+        }
+        if (excerpts.isEmpty()) {
+            return null;
+        }
+        return new Message("system", header + String.join("", excerpts));
+    }
+
+    private static JsonObject toJson(Message message) {
+        JsonObject object = new JsonObject();
+        object.addProperty("role", message.role);
+        object.addProperty("content", message.content);
+        return object;
+    }
+}
@@ -0,0 +1,336 @@
+package net.arkaine;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Répartition des requêtes entre plusieurs serveurs compatibles OpenAI
+ * (GPT4All, llama.cpp...) lancés sur des ports ou des nœuds NUMA différents.
+ *
+ * Installé comme intercepteur des clients de {@link ChatHttpClients} : une
+ * requête adressée à l'une des instances du pool part vers l'instance saine
+ * qui sert le modèle demandé et a le moins de requêtes en cours. Un échec de
+ * connexion ou une réponse 502/503/504 (ou 404 d'une instance qui ne
+ * sert pas le modèle) est retenté sur une autre instance ;
+ * une génération dont la réponse a commencé n'est jamais rejouée. Une
+ * requête étiquetée avec une {@link Endpoint} ({@code Request.Builder.tag})
+ * part vers cette instance seule, sans nouvel essai.
+ *
+ * Disponibilité et modèles de chaque instance sont relevés périodiquement
+ * sur /v1/models, dès que le pool compte plus d'une instance.
+ *
+ * Configuration : {@code -Dchat.endpoints=http://localhost:4891,http://localhost:4892}
+ * (URL de base sans chemin) et {@code -Dchat.endpoints.health.interval} en
+ * secondes (10 par défaut).
+ */
+public class EndpointPool implements Interceptor {
+    private static final Set<Integer> RETRYABLE_CODES = Set.of(502, 503, 504);
+
+    public static final class Endpoint {
+        private final HttpUrl url;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong served = new AtomicLong();
+        private volatile boolean healthy = true;
+        private volatile Set<String> models = Collections.emptySet();
+
+        Endpoint(HttpUrl url) {
+            this.url = url;
+        }
+
+        public HttpUrl getUrl() {
+            return url;
+        }
+
+        /** Requêtes envoyées dont la réponse n'est pas encore entièrement lue. */
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public long getServed() {
+            return served.get();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /** Modèles annoncés au dernier contrôle, vide tant qu'aucun n'a abouti. */
+        public Set<String> getModels() {
+            return models;
+        }
+
+        boolean matches(HttpUrl other) {
+            return url.scheme().equals(other.scheme()) && url.host().equals(other.host())
+                    && url.port() == other.port();
+        }
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final OkHttpClient healthClient;
+    // Point de départ tournant : à charge égale, les instances servent à tour de rôle
+    private final AtomicInteger rotation = new AtomicInteger();
+    private ScheduledExecutorService healthExecutor;
+
+    public EndpointPool(List<HttpUrl> urls, OkHttpClient healthClient) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Aucune instance configurée");
+        }
+        for (HttpUrl url : urls) {
+            endpoints.add(new Endpoint(url));
+        }
+        this.healthClient = healthClient;
+    }
+
+    /** Pool décrit par {@code chat.endpoints}, avec contrôles périodiques s'il y a plusieurs instances. */
+    public static EndpointPool fromProperties(OkHttpClient healthClient) {
+        List<HttpUrl> urls = new ArrayList<>();
+        for (String url : System.getProperty("chat.endpoints", "http://localhost:4891").split(",")) {
+            if (!url.isBlank()) {
+                urls.add(HttpUrl.get(url.trim()));
+            }
+        }
+        EndpointPool pool = new EndpointPool(urls, healthClient);
+        if (urls.size() > 1) {
+            pool.startHealthChecks(Long.getLong("chat.endpoints.health.interval", 10));
+        }
+        return pool;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return Collections.unmodifiableList(endpoints);
+    }
+
+    /**
+     * Instances par ordre de préférence pour {@code model}, selon les mêmes
+     * critères que le routage des requêtes : pour les appelants qui limitent
+     * eux-mêmes la charge de chaque instance.
+     */
+    public List<Endpoint> candidates(String model) {
+        List<Endpoint> sorted = new ArrayList<>(endpoints);
+        sorted.sort(Comparator.comparingInt((Endpoint endpoint) -> rank(endpoint, model))
+                .thenComparingInt(Endpoint::getInFlight));
+        return sorted;
+    }
+
+    /** Première instance configurée : adresse par défaut des requêtes de l'application. */
+    public HttpUrl primary() {
+        return endpoints.get(0).url;
+    }
+
+    public synchronized void startHealthChecks(long intervalSeconds) {
+        if (healthExecutor != null) {
+            return;
+        }
+        healthExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-endpoints-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthExecutor.scheduleWithFixedDelay(this::checkAll, 0, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Interroge toutes les instances en parallèle, une instance lente ne
+     * retardant pas les autres. Appels synchrones sur des threads virtuels :
+     * les threads du dispatcher OkHttp, non démons, ne sont pas sollicités
+     * et n'empêchent pas un programme en ligne de commande de se terminer.
+     */
+    public void checkAll() {
+        for (Endpoint endpoint : endpoints) {
+            Thread.ofVirtual().name("chat-endpoints-health").start(() -> check(endpoint));
+        }
+    }
+
+    private void check(Endpoint endpoint) {
+        Request request = new Request.Builder().url(endpoint.url.resolve("/v1/models")).get().build();
+        try (Response response = healthClient.newCall(request).execute()) {
+            if (response.isSuccessful()) {
+                endpoint.models = parseModels(response.body().string());
+            }
+            endpoint.healthy = response.isSuccessful();
+        } catch (IOException | RuntimeException e) {
+            endpoint.healthy = false;
+        }
+    }
+
+    static Set<String> parseModels(String body) {
+        Set<String> ids = new HashSet<>();
+        for (ModelCatalog.Model model : ModelCatalog.parse(body)) {
+            ids.add(model.getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!belongs(request.url())) {
+            // Adresse explicite hors du pool (--url du traitement par lots par exemple)
+            return chain.proceed(request);
+        }
+        String model = model(request.body());
+        Endpoint pinned = request.tag(Endpoint.class);
+        List<Endpoint> tried = new ArrayList<>(endpoints.size());
+        IOException failure = null;
+        Endpoint endpoint;
+        while ((endpoint = choose(model, pinned, tried)) != null) {
+            tried.add(endpoint);
+            HttpUrl url = request.url().newBuilder()
+                    .scheme(endpoint.url.scheme())
+                    .host(endpoint.url.host())
+                    .port(endpoint.url.port())
+                    .build();
+            endpoint.inFlight.incrementAndGet();
+            Response response;
+            try {
+                response = chain.proceed(request.newBuilder().url(url).build());
+            } catch (IOException e) {
+                endpoint.inFlight.decrementAndGet();
+                if (chain.call().isCanceled()) {
+                    throw e;
+                }
+                // Écartée jusqu'au prochain contrôle réussi
+                endpoint.healthy = false;
+                failure = e;
+                continue;
+            }
+            if (retryable(response.code(), endpoint, model) && choose(model, pinned, tried) != null) {
+                response.close();
+                endpoint.inFlight.decrementAndGet();
+                continue;
+            }
+            endpoint.served.incrementAndGet();
+            return releaseOnClose(response, endpoint);
+        }
+        throw failure != null ? failure : new IOException("Aucune instance disponible");
+    }
+
+    /** Instance surchargée ou en panne, ou modèle absent d'une instance dont les modèles ne sont pas encore connus. */
+    private static boolean retryable(int code, Endpoint endpoint, String model) {
+        return RETRYABLE_CODES.contains(code)
+                || (code == 404 && model != null && !endpoint.models.contains(model));
+    }
+
+    private boolean belongs(HttpUrl url) {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.matches(url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Instance la moins chargée parmi les meilleures candidates : saines et
+     * servant le modèle, puis saines aux modèles inconnus, puis saines, et
+     * en dernier recours celles marquées indisponibles.
+     */
+    private Endpoint choose(String model, Endpoint pinned, List<Endpoint> tried) {
+        if (pinned != null) {
+            return tried.contains(pinned) ? null : pinned;
+        }
+        Endpoint best = null;
+        int bestRank = Integer.MAX_VALUE;
+        int bestLoad = Integer.MAX_VALUE;
+        int offset = rotation.getAndIncrement();
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get(Math.floorMod(offset + i, endpoints.size()));
+            if (tried.contains(endpoint)) {
+                continue;
+            }
+            int rank = rank(endpoint, model);
+            int load = endpoint.inFlight.get();
+            if (rank < bestRank || (rank == bestRank && load < bestLoad)) {
+                best = endpoint;
+                bestRank = rank;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private static int rank(Endpoint endpoint, String model) {
+        if (!endpoint.healthy) {
+            return 3;
+        }
+        Set<String> models = endpoint.models;
+        if (model != null && models.contains(model)) {
+            return 0;
+        }
+        return model == null || models.isEmpty() ? 1 : 2;
+    }
+
+    /** Champ "model" du corps JSON, lu sans analyser les messages. */
+    private static String model(RequestBody body) {
+        if (body == null) {
+            return null;
+        }
+        Buffer buffer = new Buffer();
+        try {
+            body.writeTo(buffer);
+            JsonReader reader = new JsonReader(new InputStreamReader(buffer.inputStream(), StandardCharsets.UTF_8));
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                return null;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("model") && reader.peek() == JsonToken.STRING) {
+                    return reader.nextString();
+                }
+                reader.skipValue();
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** La requête reste comptée en cours jusqu'à la fermeture du corps : un flux de tokens occupe l'instance. */
+    private static Response releaseOnClose(Response response, Endpoint endpoint) {
+        ResponseBody body = response.body();
+        if (body == null) {
+            endpoint.inFlight.decrementAndGet();
+            return response;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Source source = new ForwardingSource(body.source()) {
+            @Override
+            public void close() throws IOException {
+                if (released.compareAndSet(false, true)) {
+                    endpoint.inFlight.decrementAndGet();
+                }
+                super.close();
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength()))
+                .build();
+    }
+}
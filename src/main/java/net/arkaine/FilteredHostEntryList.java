@@ -0,0 +1,32 @@
+package net.arkaine;
+
+import javafx.collections.ObservableListBase;
+
+/**
+ * Vue en lecture seule d'un sous-ensemble de lignes d'une {@link LazyHostEntryList},
+ * donné par leurs positions triées (résultat d'une recherche).
+ */
+public class FilteredHostEntryList extends ObservableListBase<HostEntry> {
+    private final LazyHostEntryList source;
+    private final int[] positions;
+
+    public FilteredHostEntryList(LazyHostEntryList source, int[] positions) {
+        this.source = source;
+        this.positions = positions;
+    }
+
+    @Override
+    public HostEntry get(int index) {
+        return source.get(positions[index]);
+    }
+
+    @Override
+    public int size() {
+        return positions.length;
+    }
+
+    /** Position dans le document de la ligne affichée à l'indice {@code index}. */
+    public int positionAt(int index) {
+        return positions[index];
+    }
+}
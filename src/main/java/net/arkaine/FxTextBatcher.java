@@ -0,0 +1,68 @@
+package net.arkaine;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.function.Consumer;
+
+/**
+ * Regroupe des fragments de texte produits sur un thread réseau et les
+ * transmet au thread JavaFX par lots : le tampon est vidé une fois par image
+ * par un {@link AnimationTimer}, quel que soit le nombre de fragments reçus
+ * entre deux images. Le timer démarre avec le premier fragment et s'arrête à
+ * {@link #close}.
+ */
+public class FxTextBatcher {
+    private final Consumer<String> sink;
+    private final StringBuilder pending = new StringBuilder();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+    private boolean started;
+
+    public FxTextBatcher(Consumer<String> sink) {
+        this.sink = sink;
+    }
+
+    public void append(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.append(text);
+            if (started) {
+                return;
+            }
+            started = true;
+        }
+        Platform.runLater(timer::start);
+    }
+
+    /**
+     * Arrête le timer, vide le reste du tampon puis exécute {@code then} sur le
+     * thread JavaFX. Les runLater étant exécutés dans l'ordre, aucun fragment
+     * n'est perdu. À appeler à la fin du flux, qu'il aboutisse ou non.
+     */
+    public void close(Runnable then) {
+        Platform.runLater(() -> {
+            timer.stop();
+            drain();
+            then.run();
+        });
+    }
+
+    private void drain() {
+        String chunk;
+        synchronized (pending) {
+            if (pending.length() == 0) {
+                return;
+            }
+            chunk = pending.toString();
+            pending.setLength(0);
+        }
+        sink.accept(chunk);
+    }
+}
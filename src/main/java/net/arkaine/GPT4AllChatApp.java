@@ -6,59 +6,161 @@ import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import okhttp3.*;
 
-import com.google.gson.reflect.TypeToken;
-
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class GPT4AllChatApp extends Application {
-    private static final String API_URL = "http://localhost:4891/v1/chat/completions";
-    private static final String API_MODELS_URL = "http://localhost:4891/v1/models";
-    private static final OkHttpClient client = new OkHttpClient();
+    static final String API_URL = ChatHttpClients.completionsUrl();
+    static final OkHttpClient client = ChatHttpClients.completions();
     private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    // Contexte supposé quand /v1/models n'en annonce pas
+    private static final int DEFAULT_CONTEXT_TOKENS = Integer.getInteger("chat.context.tokens", 2048);
 
     private ComboBox<String> modelComboBox;
+    private CheckBox streamCheckBox;
+    private Button sendButton;
+    // Requête en cours, annulable par le bouton Stop
+    private Call currentCall;
+    private final Conversation conversation = new Conversation();
+    private final Map<String, Integer> modelContextTokens = new HashMap<>();
+    private Label contextLabel;
+    private CheckBox cacheCheckBox;
+    private Label cacheLabel;
+    // Cache des réponses : création, lectures et écritures disque sur un seul thread
+    private ResponseCache responseCache;
+    private final ExecutorService cacheExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "chat-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ChatMetrics metrics = new ChatMetrics();
+    private ChatStatsPane statsPane;
+    private ModelCatalog modelCatalog;
+    private Label catalogLabel;
+    // Historique sur disque : ouverture, écritures et recherches sur un seul thread
+    private volatile ChatHistoryStore history;
+    private final ExecutorService historyExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "chat-history");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Override
     public void start(Stage primaryStage) {
+        historyExecutor.execute(() -> {
+            try {
+                history = ChatHistoryStore.defaultStore();
+            } catch (IOException e) {
+                System.err.println("Historique indisponible : " + e.getMessage());
+            }
+        });
+
         // Création des composants
         TextArea inputArea = new TextArea();
         inputArea.setPromptText("Entrez votre prompt ici...");
         inputArea.setWrapText(true);
         inputArea.setPrefHeight(100);
 
-        TextArea responseArea = new TextArea();
-        responseArea.setEditable(false);
-        responseArea.setWrapText(true);
+        // Vue virtualisée : une réponse de plusieurs milliers de lignes ne ralentit pas le streaming
+        TranscriptView responseArea = new TranscriptView();
         responseArea.setPrefHeight(200);
 
-        TextArea rawResponseArea = new TextArea();
-        rawResponseArea.setEditable(false);
-        rawResponseArea.setWrapText(true);
-        rawResponseArea.setPrefHeight(200);
-        rawResponseArea.setPromptText("Réponse HTTP brute apparaîtra ici");
+        // Replié par défaut : la réponse brute n'est mise en forme qu'à l'ouverture
+        RawResponseView rawResponseView = new RawResponseView("Réponse HTTP Brute");
 
         // Combo box pour les modèles
         modelComboBox = new ComboBox<>();
         modelComboBox.setPromptText("Sélectionnez un modèle");
         modelComboBox.setPrefWidth(500);
 
-        // Charger les modèles disponibles
+        // Charger les modèles disponibles, sans attendre le serveur
+        catalogLabel = new Label();
+        Button refreshModelsButton = new Button("Actualiser");
+        refreshModelsButton.setOnAction(e -> {
+            if (modelCatalog != null) {
+                revalidateModels(modelComboBox, responseArea, modelCatalog.refresh());
+            }
+        });
         loadAvailableModels(modelComboBox, responseArea);
 
-        Button sendButton = new Button("Envoyer");
+        // Affichage des tokens au fil de l'eau
+        streamCheckBox = new CheckBox("Réponse en streaming");
+        streamCheckBox.setSelected(true);
+
+        // Cache optionnel : persistant si -Dchat.cache.dir est défini
+        cacheCheckBox = new CheckBox("Réutiliser les réponses en cache");
+        cacheLabel = new Label();
+
+        contextLabel = new Label();
+        Button newConversationButton = new Button("Nouvelle conversation");
+        newConversationButton.setOnAction(e -> {
+            conversation.clear();
+            contextLabel.setText("");
+            responseArea.clear();
+        });
+
+        sendButton = new Button("Envoyer");
         sendButton.setOnAction(e -> {
             if (modelComboBox.getValue() == null) {
                 showAlert("Erreur", "Veuillez sélectionner un modèle.");
                 return;
             }
-            sendPrompt(inputArea, responseArea, rawResponseArea, modelComboBox.getValue());
+            sendPrompt(inputArea, responseArea, rawResponseView, modelComboBox.getValue(),
+                    streamCheckBox.isSelected());
+        });
+
+        // Annuler l'appel ferme la connexion : le serveur arrête la génération
+        Button stopButton = new Button("Stop");
+        stopButton.disableProperty().bind(sendButton.disableProperty().not());
+        stopButton.setOnAction(e -> {
+            if (currentCall != null) {
+                currentCall.cancel();
+            }
+        });
+
+        statsPane = new ChatStatsPane(metrics);
+
+        // Même prompt envoyé à plusieurs modèles, sans l'historique de la conversation
+        Button compareButton = new Button("Comparer les modèles...");
+        compareButton.setOnAction(e -> {
+            String prompt = inputArea.getText().trim();
+            if (prompt.isEmpty()) {
+                showAlert("Erreur", "Veuillez entrer un prompt.");
+                return;
+            }
+            List<String> models = chooseModels();
+            if (!models.isEmpty()) {
+                new ModelComparison(client, API_URL, ChatHttpClients.endpoints()).show(prompt, models);
+            }
+        });
+
+        Button historyButton = new Button("Historique...");
+        historyButton.setOnAction(e -> {
+            if (history == null) {
+                showAlert("Erreur", "Historique indisponible : voir la sortie d'erreur.");
+                return;
+            }
+            new ChatHistoryWindow(history, historyExecutor).show();
         });
 
         // Layout
@@ -66,14 +168,21 @@ public class GPT4AllChatApp extends Application {
         layout.setPadding(new Insets(15));
         layout.getChildren().addAll(
                 new Label("Modèle:"),
-                modelComboBox,
+                new HBox(10, modelComboBox, refreshModelsButton),
+                catalogLabel,
+                streamCheckBox,
+                cacheCheckBox,
+                cacheLabel,
                 new Label("Prompt:"),
                 inputArea,
-                sendButton,
+                new HBox(10, sendButton, stopButton),
+                compareButton,
+                new HBox(10, newConversationButton, historyButton),
+                contextLabel,
                 new Label("Réponse:"),
                 responseArea,
-                new Label("Réponse HTTP Brute:"),
-                rawResponseArea
+                rawResponseView,
+                statsPane
         );
 
         // Scène
@@ -83,60 +192,72 @@ public class GPT4AllChatApp extends Application {
         primaryStage.show();
     }
 
-    private void loadAvailableModels(ComboBox<String> modelComboBox, TextArea responseArea) {
-        Request request = new Request.Builder()
-                .url(API_MODELS_URL)
-                .get()
-                .build();
-
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Platform.runLater(() -> {
-                    responseArea.setText("Erreur de chargement des modèles : " + e.getMessage());
-                    // Modèles par défaut en cas d'échec
-                    modelComboBox.getItems().addAll(
-                            "TheBloke/deepseek-coder-6.7B-instruct-GGUF",
-                            "mistralai/Mistral-7B-Instruct-v0.1",
-                            "gpt4all-7b-chat"
-                    );
-                });
+    // Modèles proposés tant qu'aucun catalogue n'a pu être lu ni chargé
+    private static final List<String> DEFAULT_MODELS = List.of(
+            "TheBloke/deepseek-coder-6.7B-instruct-GGUF",
+            "mistralai/Mistral-7B-Instruct-v0.1",
+            "gpt4all-7b-chat"
+    );
+
+    private void loadAvailableModels(ComboBox<String> modelComboBox, TranscriptView responseArea) {
+        // Catalogue enregistré affiché dès qu'il est lu, puis revalidé s'il a expiré
+        ModelCatalog.warmUp().thenAcceptAsync(catalog -> {
+            modelCatalog = catalog;
+            ModelCatalog.Snapshot cached = catalog.getCurrent();
+            if (cached != null) {
+                showModels(modelComboBox, cached);
             }
+            revalidateModels(modelComboBox, responseArea, catalog.refreshIfStale());
+        }, Platform::runLater);
+    }
 
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                Platform.runLater(() -> {
-                    try {
-                        if (!response.isSuccessful()) {
-                            responseArea.setText("Erreur : " + response.code() + " " + response.message());
-                            return;
-                        }
-
-                        // Parser la réponse
-                        String responseBody = response.body().string();
-                        Type listType = new TypeToken<List<ModelInfo>>(){}.getType();
-                        List<ModelInfo> models = gson.fromJson(responseBody, listType);
-
-                        // Mettre à jour la combo box
-                        List<String> modelNames = models.stream()
-                                .map(ModelInfo::getId)
-                                .collect(Collectors.toList());
+    private void revalidateModels(ComboBox<String> modelComboBox, TranscriptView responseArea,
+                                  CompletableFuture<ModelCatalog.Snapshot> refresh) {
+        if (refresh == null) {
+            return;
+        }
+        catalogLabel.setText(modelCatalog.getCurrent() != null ? "Catalogue enregistré, actualisation..."
+                : "Chargement des modèles...");
+        refresh.whenComplete((snapshot, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                showModels(modelComboBox, snapshot);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (modelCatalog.getCurrent() != null) {
+                catalogLabel.setText(catalogLabel(modelCatalog.getCurrent()) + " (serveur injoignable)");
+            } else {
+                responseArea.setText("Erreur de chargement des modèles : " + cause.getMessage());
+                catalogLabel.setText("Modèles par défaut");
+                modelComboBox.getItems().setAll(DEFAULT_MODELS);
+            }
+        }));
+    }
 
-                        modelComboBox.getItems().addAll(modelNames);
-                    } catch (Exception e) {
-                        responseArea.setText("Erreur de traitement : " + e.getMessage());
-                        // Modèles par défaut en cas d'erreur
-                        modelComboBox.getItems().addAll(
-                                "TheBloke/deepseek-coder-6.7B-instruct-GGUF",
-                                "mistralai/Mistral-7B-Instruct-v0.1",
-                                "gpt4all-7b-chat"
-                        );
-                    }
-                });
+    private void showModels(ComboBox<String> modelComboBox, ModelCatalog.Snapshot snapshot) {
+        String selected = modelComboBox.getValue();
+        List<String> modelNames = new ArrayList<>();
+        for (ModelCatalog.Model model : snapshot.getModels()) {
+            modelNames.add(model.getId());
+            if (model.getContextTokens() != null) {
+                modelContextTokens.put(model.getId(), model.getContextTokens());
             }
-        });
+        }
+        modelComboBox.getItems().setAll(modelNames);
+        if (selected != null && modelNames.contains(selected)) {
+            modelComboBox.setValue(selected);
+        }
+        catalogLabel.setText(catalogLabel(snapshot));
     }
-    private void sendPrompt(TextArea inputArea, TextArea responseArea, TextArea rawResponseArea, String selectedModel) {
+
+    private static String catalogLabel(ModelCatalog.Snapshot snapshot) {
+        return snapshot.getModels().size() + " modèle(s), liste du "
+                + new SimpleDateFormat("dd/MM HH:mm").format(new Date(snapshot.getFetchedAt()));
+    }
+
+    private void sendPrompt(TextArea inputArea, TranscriptView responseArea, RawResponseView rawResponseView, String selectedModel,
+                            boolean stream) {
         String prompt = inputArea.getText().trim();
         if (prompt.isEmpty()) {
             showAlert("Erreur", "Veuillez entrer un prompt.");
@@ -144,105 +265,340 @@ public class GPT4AllChatApp extends Application {
         }
 
         // Désactiver le bouton pendant le traitement
-        Button sendButton = (Button) inputArea.getScene().lookup(".button");
         sendButton.setDisable(true);
         responseArea.setText("Chargement...");
-        rawResponseArea.clear();
+        rawResponseView.clear();
 
-        // Préparer la requête
+        // Préparer la requête : historique récent dans le budget du modèle, un quart réservé à la réponse
+        int contextTokens = modelContextTokens.getOrDefault(selectedModel, DEFAULT_CONTEXT_TOKENS);
+        Conversation.Window window = conversation.window(prompt, contextTokens - contextTokens / 4);
+        contextLabel.setText("Contexte : ~" + window.getTokens() + " / " + contextTokens + " tokens"
+                + (window.getDroppedTurns() > 0 ? ", " + window.getDroppedTurns() + " tour(s) résumé(s)" : ""));
         JsonObject requestBody = new JsonObject();
         requestBody.addProperty("model", selectedModel);
-        JsonObject messageObj = new JsonObject();
-        messageObj.addProperty("role", "user");
-        messageObj.addProperty("content", prompt);
-        requestBody.add("messages", gson.toJsonTree(new JsonObject[]{messageObj}));
+        requestBody.add("messages", window.getMessages());
+
+        int estimatedPromptTokens = window.getTokens();
+        if (!cacheCheckBox.isSelected()) {
+            sendRequest(responseArea, rawResponseView, selectedModel, prompt, requestBody, estimatedPromptTokens,
+                    null, stream);
+            return;
+        }
+
+        // La clé ignore "stream" : une réponse obtenue en streaming sert aussi sans
+        String cacheKey = ResponseCache.key(requestBody);
+        cacheExecutor.execute(() -> {
+            ResponseCache cache = responseCache();
+            String cached = cache != null ? cache.get(cacheKey) : null;
+            long hits = cache != null ? cache.getHits() : 0;
+            long misses = cache != null ? cache.getMisses() : 0;
+            Platform.runLater(() -> {
+                if (cache == null) {
+                    sendRequest(responseArea, rawResponseView, selectedModel, prompt, requestBody,
+                            estimatedPromptTokens, null, stream);
+                    return;
+                }
+                updateCacheLabel(hits, misses);
+                if (cached != null) {
+                    responseArea.setText(cached);
+                    rawResponseView.show("Réponse servie depuis le cache (clé " + cacheKey + ")");
+                    conversation.addTurn(prompt, cached);
+                    recordHistory(selectedModel, prompt, cached);
+                    sendButton.setDisable(false);
+                    return;
+                }
+                sendRequest(responseArea, rawResponseView, selectedModel, prompt, requestBody,
+                        estimatedPromptTokens, cacheKey, stream);
+            });
+        });
+    }
+
+    /** Envoie la requête au serveur ; {@code cacheKey} est null si la réponse ne doit pas être mise en cache. */
+    private void sendRequest(TranscriptView responseArea, RawResponseView rawResponseView, String selectedModel,
+                             String prompt, JsonObject requestBody, int estimatedPromptTokens, String cacheKey,
+                             boolean stream) {
+        if (stream) {
+            requestBody.addProperty("stream", true);
+        }
 
+        // Les temps réseau sont relevés par l'EventListener du client via cette étiquette
+        RequestMetrics requestMetrics = new RequestMetrics(selectedModel);
         Request request = new Request.Builder()
                 .url(API_URL)
                 .post(RequestBody.create(
                         gson.toJson(requestBody),
                         MediaType.parse("application/json")
                 ))
+                .tag(RequestMetrics.class, requestMetrics)
                 .build();
 
+        if (stream) {
+            currentCall = client.newCall(request);
+            currentCall.enqueue(streamingCallback(prompt, cacheKey, requestMetrics, estimatedPromptTokens,
+                    responseArea, rawResponseView, sendButton));
+            return;
+        }
+
         // Appel asynchrone
-        client.newCall(request).enqueue(new Callback() {
+        currentCall = client.newCall(request);
+        currentCall.enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
+                recordMetrics(requestMetrics, -1, -1, call.isCanceled() ? "annulée" : "erreur");
                 Platform.runLater(() -> {
-                    responseArea.setText("Erreur de connexion : " + e.getMessage());
-                    rawResponseArea.setText("Erreur de connexion : " + e.getMessage());
+                    responseArea.setText(call.isCanceled() ? "Requête annulée."
+                            : "Erreur de connexion : " + e.getMessage());
+                    rawResponseView.show("Erreur de connexion : " + e.getMessage());
                     sendButton.setDisable(false);
                 });
             }
 
             @Override
             public void onResponse(Call call, Response response) throws IOException {
+                // Lecture et analyse sur le thread OkHttp, une seule fois
+                String headers = describe(response);
+                byte[] raw;
+                try (ResponseBody body = response.body()) {
+                    raw = body.bytes();
+                } catch (IOException e) {
+                    recordMetrics(requestMetrics, -1, -1, call.isCanceled() ? "annulée" : "erreur");
+                    Platform.runLater(() -> {
+                        responseArea.setText(call.isCanceled() ? "Requête annulée."
+                                : "Erreur de connexion : " + e.getMessage());
+                        sendButton.setDisable(false);
+                    });
+                    return;
+                }
+
+                if (!response.isSuccessful()) {
+                    recordMetrics(requestMetrics, -1, -1, "http " + response.code());
+                    Platform.runLater(() -> {
+                        rawResponseView.showLazily(() -> headers + "\nCorps de la réponse:\n"
+                                + new String(raw, StandardCharsets.UTF_8));
+                        responseArea.setText("Erreur : " + response.code() + " " + response.message());
+                        sendButton.setDisable(false);
+                    });
+                    return;
+                }
+
+                ChatCompletionParser.Completion completion;
+                try {
+                    completion = ChatCompletionParser.parse(
+                            new InputStreamReader(new ByteArrayInputStream(raw), StandardCharsets.UTF_8));
+                } catch (Exception e) {
+                    recordMetrics(requestMetrics, -1, -1, "réponse invalide");
+                    Platform.runLater(() -> {
+                        responseArea.setText("Erreur de traitement : " + e.getMessage());
+                        rawResponseView.showLazily(() -> headers + "\nImpossible de parser le JSON : "
+                                + new String(raw, StandardCharsets.UTF_8));
+                        sendButton.setDisable(false);
+                    });
+                    return;
+                }
+                List<ChatCompletionParser.Choice> choices = completion.getChoices();
+                String assistantResponse = choices.isEmpty() || choices.get(0).getContent() == null
+                        ? "" : choices.get(0).getContent();
+                // Sans bloc usage, les compteurs sont estimés
+                recordMetrics(requestMetrics,
+                        completion.getPromptTokens() >= 0 ? completion.getPromptTokens() : estimatedPromptTokens,
+                        completion.getCompletionTokens() >= 0 ? completion.getCompletionTokens()
+                                : Conversation.estimateTokens(assistantResponse),
+                        "ok");
+
                 Platform.runLater(() -> {
-                    try {
-                        // Récupérer le corps de la réponse
-                        String responseBody = response.body().string();
-
-                        // Afficher les détails bruts de la réponse
-                        StringBuilder rawResponse = new StringBuilder();
-                        rawResponse.append("Code HTTP: ").append(response.code()).append("\n");
-                        rawResponse.append("Message: ").append(response.message()).append("\n");
-                        rawResponse.append("Headers:\n");
-                        for (String name : response.headers().names()) {
-                            rawResponse.append(name).append(": ").append(response.headers().get(name)).append("\n");
-                        }
-                        rawResponse.append("\nCorps de la réponse:\n");
-
-                        // Analyse du corps de la réponse
-                        try {
-                            JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-                            rawResponse.append(gson.toJson(jsonResponse));
-
-                            // Extraction de toutes les lignes de réponse
-                            JsonArray choices = jsonResponse.getAsJsonArray("choices");
-                            rawResponse.append("\n\nLignes de réponse complètes:\n");
-                            for (int i = 0; i < choices.size(); i++) {
-                                JsonObject choice = choices.get(i).getAsJsonObject();
-                                JsonObject message = choice.getAsJsonObject("message");
-
-                                rawResponse.append("Ligne ").append(i + 1).append(":\n");
-                                rawResponse.append("Role: ").append(message.get("role")).append("\n");
-                                rawResponse.append("Contenu: ").append(message.get("content")).append("\n\n");
-                            }
-                        } catch (Exception e) {
-                            rawResponse.append("Impossible de parser le JSON : ").append(responseBody);
-                        }
+                    responseArea.setText(assistantResponse);
+                    onReplyComplete(selectedModel, prompt, cacheKey, assistantResponse);
+                    // Mise en forme du JSON seulement si le panneau brut est ouvert
+                    rawResponseView.showLazily(() -> formatRawResponse(headers, raw, choices));
+                    sendButton.setDisable(false);
+                });
+            }
+        });
+    }
 
-                        rawResponseArea.setText(rawResponse.toString());
+    private void recordMetrics(RequestMetrics requestMetrics, int promptTokens, int completionTokens,
+                               String outcome) {
+        requestMetrics.finish(promptTokens, completionTokens, outcome);
+        metrics.record(requestMetrics);
+        statsPane.refresh();
+    }
+
+    private static String describe(Response response) {
+        StringBuilder raw = new StringBuilder();
+        raw.append("Code HTTP: ").append(response.code()).append("\n");
+        raw.append("Message: ").append(response.message()).append("\n");
+        raw.append("Headers:\n");
+        for (String name : response.headers().names()) {
+            raw.append(name).append(": ").append(response.headers().get(name)).append("\n");
+        }
+        return raw.toString();
+    }
+
+    private static String formatRawResponse(String headers, byte[] body, List<ChatCompletionParser.Choice> choices) {
+        StringBuilder rawResponse = new StringBuilder(headers);
+        rawResponse.append("\nCorps de la réponse:\n");
+        rawResponse.append(gson.toJson(JsonParser.parseString(new String(body, StandardCharsets.UTF_8))));
+
+        // Extraction de toutes les lignes de réponse
+        rawResponse.append("\n\nLignes de réponse complètes:\n");
+        for (int i = 0; i < choices.size(); i++) {
+            ChatCompletionParser.Choice choice = choices.get(i);
+            rawResponse.append("Ligne ").append(i + 1).append(":\n");
+            rawResponse.append("Role: ").append(choice.getRole()).append("\n");
+            rawResponse.append("Contenu: ").append(choice.getContent()).append("\n\n");
+        }
+        return rawResponse.toString();
+    }
+
+    private Callback streamingCallback(String prompt, String cacheKey, RequestMetrics requestMetrics,
+                                       int estimatedPromptTokens, TranscriptView responseArea,
+                                       RawResponseView rawResponseView, Button sendButton) {
+        return new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                recordMetrics(requestMetrics, -1, -1, call.isCanceled() ? "annulée" : "erreur");
+                Platform.runLater(() -> {
+                    responseArea.setText(call.isCanceled() ? "Requête annulée."
+                            : "Erreur de connexion : " + e.getMessage());
+                    rawResponseView.show("Erreur de connexion : " + e.getMessage());
+                    sendButton.setDisable(false);
+                });
+            }
 
-                        if (!response.isSuccessful()) {
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                // Lecture sur le thread OkHttp : le thread JavaFX ne reçoit que des lots de texte
+                try (ResponseBody body = response.body()) {
+                    StringBuilder rawResponse = new StringBuilder(describe(response));
+
+                    if (!response.isSuccessful()) {
+                        recordMetrics(requestMetrics, -1, -1, "http " + response.code());
+                        rawResponse.append("\nCorps de la réponse:\n").append(body.string());
+                        Platform.runLater(() -> {
+                            rawResponseView.show(rawResponse.toString());
                             responseArea.setText("Erreur : " + response.code() + " " + response.message());
-                            return;
+                            sendButton.setDisable(false);
+                        });
+                        return;
+                    }
+
+                    boolean[] firstChunk = {true};
+                    FxTextBatcher batcher = new FxTextBatcher(chunk -> {
+                        if (firstChunk[0]) {
+                            // Remplace "Chargement..." dès le premier token
+                            responseArea.setText(chunk);
+                            firstChunk[0] = false;
+                        } else {
+                            responseArea.appendText(chunk);
                         }
+                    });
 
-                        // Parser la réponse pour l'affichage principal
-                        JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
-                        String assistantResponse = jsonResponse
-                                .getAsJsonArray("choices")
-                                .get(0)
-                                .getAsJsonObject()
-                                .getAsJsonObject("message")
-                                .get("content")
-                                .getAsString();
-
-                        responseArea.setText(assistantResponse);
+                    ChatStreamReader reader = new ChatStreamReader();
+                    long start = System.nanoTime();
+                    String reply = null;
+                    try {
+                        reply = reader.read(body.source(), delta -> {
+                            requestMetrics.markFirstToken();
+                            batcher.append(delta);
+                        });
                     } catch (Exception e) {
-                        responseArea.setText("Erreur de traitement : " + e.getMessage());
-                        rawResponseArea.setText("Erreur de traitement : " + e.getMessage() +
-                                "\n\nDétails de l'erreur:\n" + e.toString());
-                    } finally {
-                        sendButton.setDisable(false);
+                        rawResponse.append(call.isCanceled() ? "\nGénération arrêtée par l'utilisateur\n"
+                                : "\nFlux interrompu : " + e.getMessage() + "\n");
                     }
-                });
+                    String completeReply = reply;
+                    // Un événement par token quand le serveur n'envoie pas de bloc usage
+                    recordMetrics(requestMetrics,
+                            reader.getPromptTokens() >= 0 ? reader.getPromptTokens() : estimatedPromptTokens,
+                            reader.getCompletionTokens() >= 0 ? reader.getCompletionTokens() : reader.getChunkCount(),
+                            reply != null ? "ok" : call.isCanceled() ? "annulée" : "interrompue");
+                    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+                    rawResponse.append("\nÉvénements reçus: ").append(reader.getChunkCount()).append("\n");
+                    rawResponse.append("Fin: ").append(reader.getFinishReason()).append("\n");
+                    rawResponse.append("Durée du flux: ").append(elapsedMs).append(" ms\n");
+                    batcher.close(() -> {
+                        if (firstChunk[0]) {
+                            responseArea.clear();
+                        }
+                        // Une réponse interrompue n'entre pas dans l'historique
+                        if (completeReply != null) {
+                            onReplyComplete(requestMetrics.getModel(), prompt, cacheKey, completeReply);
+                        }
+                        rawResponseView.show(rawResponse.toString());
+                        sendButton.setDisable(false);
+                    });
+                }
+            }
+        };
+    }
+
+    private List<String> chooseModels() {
+        ListView<String> list = new ListView<>(modelComboBox.getItems());
+        list.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        list.setPrefHeight(200);
+
+        Dialog<List<String>> dialog = new Dialog<>();
+        dialog.setTitle("Comparer les modèles");
+        dialog.setHeaderText("Sélectionnez les modèles à comparer (Ctrl+clic)");
+        dialog.getDialogPane().setContent(list);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.setResultConverter(button -> button == ButtonType.OK
+                ? List.copyOf(list.getSelectionModel().getSelectedItems())
+                : List.of());
+        return dialog.showAndWait().orElse(List.of());
+    }
+
+    private void onReplyComplete(String model, String prompt, String cacheKey, String reply) {
+        conversation.addTurn(prompt, reply);
+        recordHistory(model, prompt, reply);
+        if (cacheKey != null) {
+            cacheExecutor.execute(() -> {
+                if (responseCache != null) {
+                    responseCache.put(cacheKey, reply);
+                }
+            });
+        }
+    }
+
+    /** Ajout au journal et à l'index hors du thread JavaFX. */
+    private void recordHistory(String model, String prompt, String reply) {
+        historyExecutor.execute(() -> {
+            ChatHistoryStore store = history;
+            if (store == null) {
+                return;
+            }
+            try {
+                store.append(model, prompt, reply);
+            } catch (IOException e) {
+                System.err.println("Échange non enregistré dans l'historique : " + e.getMessage());
             }
         });
     }
 
+    /** À n'appeler que sur {@link #cacheExecutor} : la création parcourt le répertoire du cache. */
+    private ResponseCache responseCache() {
+        if (responseCache == null) {
+            String directory = System.getProperty("chat.cache.dir");
+            try {
+                responseCache = new ResponseCache(
+                        Long.getLong("chat.cache.memory.bytes", 16L << 20),
+                        directory != null ? Paths.get(directory) : null,
+                        Long.getLong("chat.cache.disk.bytes", 256L << 20));
+            } catch (IOException e) {
+                Platform.runLater(() -> {
+                    showAlert("Erreur", "Cache disque indisponible : " + e.getMessage());
+                    cacheCheckBox.setSelected(false);
+                });
+                return null;
+            }
+        }
+        return responseCache;
+    }
+
+    private void updateCacheLabel(long hits, long misses) {
+        cacheLabel.setText("Cache : " + hits + " succès, " + misses + " échecs");
+    }
+
     private void showAlert(String title, String content) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -251,18 +607,23 @@ public class GPT4AllChatApp extends Application {
         alert.showAndWait();
     }
 
-    // Classe pour représenter les informations du modèle
-    private static class ModelInfo {
-        private String id;
-        private String object;
-        private long created;
-
-        public String getId() {
-            return id;
-        }
+    @Override
+    public void stop() throws Exception {
+        // Les derniers échanges en file sont écrits avant la fermeture
+        Future<?> closing = historyExecutor.submit(() -> {
+            if (history != null) {
+                history.close();
+            }
+        });
+        historyExecutor.shutdown();
+        // Dernière réponse mise en cache écrite sur disque
+        cacheExecutor.shutdown();
+        closing.get(5, TimeUnit.SECONDS);
+        cacheExecutor.awaitTermination(5, TimeUnit.SECONDS);
     }
 
     public static void main(String[] args) {
+        ModelCatalog.warmUp();
         launch(args);
     }
 }
\ No newline at end of file
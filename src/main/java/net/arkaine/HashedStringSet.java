@@ -0,0 +1,91 @@
+package net.arkaine;
+
+/**
+ * Ensemble de chaînes réduit à leurs empreintes 64 bits, en adressage ouvert
+ * dans un seul tableau de long : une douzaine d'octets par élément au lieu
+ * d'une String (plus de 60 octets pour un nom de domaine courant).
+ *
+ * Deux chaînes différentes de même empreinte sont confondues : sur un million
+ * d'éléments, la probabilité d'une seule collision est de l'ordre de 10^-8.
+ */
+public class HashedStringSet {
+    private static final float MAX_LOAD = 0.7f;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    public HashedStringSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /** @return true si la chaîne n'était pas encore présente */
+    public boolean add(CharSequence value) {
+        long hash = hash(value);
+        int i = (int) hash & mask;
+        while (table[i] != 0) {
+            if (table[i] == hash) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = hash;
+        if (++size > threshold) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(CharSequence value) {
+        long hash = hash(value);
+        int i = (int) hash & mask;
+        while (table[i] != 0) {
+            if (table[i] == hash) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** FNV-1a 64 bits suivi du mélange final de MurmurHash3 ; 0 est réservé aux cases vides. */
+    static long hash(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * MAX_LOAD);
+    }
+
+    private void grow() {
+        long[] old = table;
+        allocate(old.length * 2);
+        for (long hash : old) {
+            if (hash != 0) {
+                int i = (int) hash & mask;
+                while (table[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = hash;
+            }
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package net.arkaine;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import java.util.List;
 
 public class HostEntry {
+    /** État d'écriture de la ligne dans le fichier hosts. */
+    public enum State { COMMITTED, PENDING }
+
     public void setEnabled(boolean enabled) {
         this.enabled.set(enabled);
     }
@@ -11,6 +18,8 @@ public class HostEntry {
 
     private String content;
     private BooleanProperty enabled = new SimpleBooleanProperty();
+    private final HostLine parsed;
+    private final ObjectProperty<State> state = new SimpleObjectProperty<>(State.COMMITTED);
 
     public HostEntry(String line) {
         if (line.startsWith("#")) {
@@ -20,16 +29,51 @@ public class HostEntry {
             this.content = line.trim();
             enabled.set(true);
         }
-
-        enabled.addListener((obs, oldVal, newVal) -> {
-            // Ne rien faire ici car la mise à jour du fichier se fait via la cellule
-        });
+        parsed = HostLine.parse(line);
     }
 
     public String getContent() {
         return content;
     }
 
+    /** Adresse IP, ou null si la ligne n'est pas une correspondance (commentaire, ligne vide). */
+    public String getIp() {
+        return parsed.getIp();
+    }
+
+    public String getCanonicalName() {
+        return parsed.getCanonicalName();
+    }
+
+    public List<String> getAliases() {
+        return parsed.getAliases();
+    }
+
+    public List<String> getHostnames() {
+        return parsed.getHostnames();
+    }
+
+    /** Commentaire de fin de ligne, ou texte d'une ligne de commentaire. */
+    public String getComment() {
+        return parsed.getComment();
+    }
+
+    public boolean isMapping() {
+        return parsed.isMapping();
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public void setState(State state) {
+        this.state.set(state);
+    }
+
+    public ObjectProperty<State> stateProperty() {
+        return state;
+    }
+
     public boolean isEnabled() {
         return enabled.get();
     }
@@ -1,25 +1,44 @@
 package net.arkaine;
 
+import javafx.beans.value.ChangeListener;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ListCell;
 import javafx.scene.layout.HBox;
 import javafx.scene.control.Label;
-import java.util.List;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.IntPredicate;
 
+/**
+ * Cellule recyclée de la liste des entrées. Les nœuds, l'action de la case
+ * et les écouteurs sont créés une fois pour toutes : {@code updateItem} ne
+ * fait que détacher l'entrée précédente et s'attacher à la nouvelle, sans
+ * allocation ni liaison qui s'accumule au défilement.
+ */
 public class HostEntryCell extends ListCell<HostEntry> {
-    private HBox hbox;
-    private CheckBox checkBox;
-    private Label label;
-    private Function<List<String>, Boolean> saveCallback;
-
-    public HostEntryCell(Function<List<String>, Boolean> saveCallback) {
-        this.saveCallback = saveCallback;
-        hbox = new HBox(10);
-        checkBox = new CheckBox();
-        label = new Label();
-        hbox.getChildren().addAll(checkBox, label);
+    private static final String PENDING_STYLE = "-fx-font-style: italic;";
+
+    private final CheckBox checkBox = new CheckBox();
+    private final Label label = new Label();
+    private final HBox hbox = new HBox(10, checkBox, label);
+    private final IntPredicate toggleCallback;
+    // Entrée suivie par les écouteurs : c'est elle qu'il faut détacher, pas le nouvel élément
+    private HostEntry boundEntry;
+    private final ChangeListener<HostEntry.State> stateListener = (obs, oldState, newState) -> showState(newState);
+    private final ChangeListener<Boolean> enabledListener = (obs, wasEnabled, enabled) -> checkBox.setSelected(enabled);
+
+    public HostEntryCell(IntPredicate toggleCallback) {
+        this.toggleCallback = toggleCallback;
+        checkBox.setOnAction(e -> {
+            HostEntry entry = boundEntry;
+            if (entry == null) {
+                return;
+            }
+            // Seule la ligne basculée est transmise pour l'écriture
+            entry.setEnabled(checkBox.isSelected());
+            if (!toggleCallback.test(getIndex())) {
+                // Modification refusée : l'entrée revient à son état, la case suit
+                entry.setEnabled(!checkBox.isSelected());
+            }
+        });
     }
 
     @Override
@@ -27,34 +46,37 @@ public class HostEntryCell extends ListCell<HostEntry> {
         super.updateItem(entry, empty);
 
         if (empty || entry == null) {
+            bind(null);
             setGraphic(null);
             return;
         }
 
+        bind(entry);
         label.setText(entry.getContent());
-
-        // Délie la propriété précédente pour éviter des effets secondaires
-        checkBox.selectedProperty().unbindBidirectional(getItem() != null ? getItem().enabledProperty() : null);
-
-        // Mise à jour de l'état de la case à cocher
         checkBox.setSelected(entry.isEnabled());
+        // Les lignes vides n'ont pas d'état à basculer
+        checkBox.setVisible(!entry.getContent().isEmpty());
+        showState(entry.getState());
+        setGraphic(hbox);
+    }
 
-        // Lie la nouvelle propriété
-        checkBox.selectedProperty().bindBidirectional(entry.enabledProperty());
-
-        checkBox.setOnAction(e -> {
-            // Crée une copie de la liste à sauvegarder
-            List<String> lines = getListView().getItems()
-                    .stream()
-                    .map(HostEntry::toString)
-                    .collect(Collectors.toList());
-
-            if (!saveCallback.apply(lines)) {
-                // Si la sauvegarde échoue, annule le changement
-                checkBox.setSelected(!checkBox.isSelected());
-            }
-        });
+    private void bind(HostEntry entry) {
+        if (entry == boundEntry) {
+            return;
+        }
+        if (boundEntry != null) {
+            boundEntry.stateProperty().removeListener(stateListener);
+            boundEntry.enabledProperty().removeListener(enabledListener);
+        }
+        boundEntry = entry;
+        if (entry != null) {
+            entry.stateProperty().addListener(stateListener);
+            entry.enabledProperty().addListener(enabledListener);
+        }
+    }
 
-        setGraphic(hbox);
+    private void showState(HostEntry.State state) {
+        // Italique tant que la modification n'est pas écrite dans le fichier
+        label.setStyle(state == HostEntry.State.PENDING ? PENDING_STYLE : "");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package net.arkaine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Ligne du fichier hosts découpée en adresse IP, nom canonique, alias et
+ * commentaire de fin de ligne. Une ligne commentée qui contient une
+ * correspondance ("#10.0.0.1 foo") est reconnue comme une entrée désactivée.
+ */
+public final class HostLine {
+    /** Noms déclarés pour le système lui-même : localhost et les adresses IPv6 réservées. */
+    static final Set<String> SYSTEM_NAMES = Set.of("localhost.localdomain", "local", "localhost",
+            "broadcasthost", "ip6-localhost", "ip6-loopback", "ip6-localnet", "ip6-mcastprefix",
+            "ip6-allnodes", "ip6-allrouters", "ip6-allhosts");
+    // Nom de la machine sous Debian et Ubuntu
+    private static final String MACHINE_NAME_ADDRESS = "127.0.1.1";
+
+    private final boolean commented;
+    private final String ip;
+    private final String canonicalName;
+    private final List<String> aliases;
+    private final String comment;
+
+    private HostLine(boolean commented, String ip, String canonicalName, List<String> aliases, String comment) {
+        this.commented = commented;
+        this.ip = ip;
+        this.canonicalName = canonicalName;
+        this.aliases = aliases;
+        this.comment = comment;
+    }
+
+    public static HostLine parse(String line) {
+        String body = line.trim();
+        boolean commented = body.startsWith("#");
+        if (commented) {
+            body = body.substring(1).trim();
+        }
+        String comment = null;
+        int hash = body.indexOf('#');
+        if (hash >= 0) {
+            comment = body.substring(hash + 1).trim();
+            body = body.substring(0, hash);
+        }
+
+        List<String> tokens = tokenize(body);
+        if (tokens.size() < 2 || !isIpAddress(tokens.get(0))) {
+            // Simple commentaire ou ligne invalide : pas de correspondance
+            String text = comment == null ? body.trim() : (body.trim() + " #" + comment).trim();
+            return new HostLine(commented, null, null, Collections.emptyList(), text.isEmpty() ? null : text);
+        }
+        List<String> aliases = tokens.size() > 2
+                ? Collections.unmodifiableList(tokens.subList(2, tokens.size()))
+                : Collections.emptyList();
+        return new HostLine(commented, tokens.get(0), tokens.get(1), aliases, comment);
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>(4);
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                tokens.add(text.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+
+    /** Vérification syntaxique uniquement : aucune résolution DNS. */
+    public static boolean isIpAddress(String text) {
+        if (text.indexOf(':') >= 0) {
+            // IPv6, éventuellement avec zone ("fe80::1%eth0")
+            int end = text.indexOf('%');
+            for (int i = 0; i < (end >= 0 ? end : text.length()); i++) {
+                char c = text.charAt(i);
+                if (!(c == ':' || c == '.' || Character.digit(c, 16) >= 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int parts = 0;
+        int value = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (value < 0) {
+                    return false;
+                }
+                parts++;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return value >= 0 && parts == 3;
+    }
+
+    /**
+     * Texte d'une correspondance activée ou désactivée : désactivée, c'est la
+     * même ligne précédée de "#", comme l'écrit {@link HostEntry}.
+     */
+    public static String withEnabled(String line, boolean enabled) {
+        String content = line.trim();
+        if (content.startsWith("#")) {
+            content = content.substring(1).trim();
+        }
+        return enabled ? content : "#" + content;
+    }
+
+    public boolean isCommented() {
+        return commented;
+    }
+
+    /** Vrai si la ligne associe une adresse à au moins un nom. */
+    public boolean isMapping() {
+        return ip != null;
+    }
+
+    /**
+     * Vrai pour une correspondance du système lui-même : un nom de
+     * {@link #SYSTEM_NAMES} ou le nom de la machine. Une adresse de bouclage
+     * associée à d'autres noms (127.0.0.1 projet.test) n'en est pas une.
+     */
+    public boolean isSystemMapping() {
+        if (ip == null) {
+            return false;
+        }
+        if (ip.equals(MACHINE_NAME_ADDRESS)) {
+            return true;
+        }
+        for (String name : getHostnames()) {
+            if (SYSTEM_NAMES.contains(name.toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public String getCanonicalName() {
+        return canonicalName;
+    }
+
+    public List<String> getAliases() {
+        return aliases;
+    }
+
+    public List<String> getHostnames() {
+        if (canonicalName == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(aliases.size() + 1);
+        names.add(canonicalName);
+        names.addAll(aliases);
+        return names;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+}
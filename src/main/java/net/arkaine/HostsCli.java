@@ -0,0 +1,252 @@
+package net.arkaine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gestion du fichier hosts en ligne de commande, sans JavaFX : utilisable
+ * depuis des scripts de provisionnement. Plusieurs commandes séparées par
+ * {@code --} forment un seul lot, écrit en une seule écriture atomique.
+ *
+ * <pre>
+ * HostsCli [--file /etc/hosts] [--dry-run] commande [arguments] [-- commande ...]
+ *   list [--all] [motif]
+ *   enable NOM...  |  disable NOM...
+ *   add IP NOM [ALIAS...]
+ *   remove NOM...
+ *   apply-profile FICHIER
+ *   switch-profile NOM
+ *   import-blocklist [--section NOM] FICHIER...
+ * </pre>
+ *
+ * {@code import-blocklist} remplace la section (par défaut « blocklist »)
+ * par les domaines des listes données, lus et écrits en flux : seule une
+ * empreinte de chaque nom reste en mémoire, quelle que soit la taille des
+ * listes. Il ne se combine pas avec d'autres commandes.
+ *
+ * Le programme ne charge que quelques classes sans réflexion, ce qui le
+ * rend compatible avec une archive AppCDS
+ * ({@code -XX:ArchiveClassesAtExit=hosts-cli.jsa}, puis
+ * {@code -XX:SharedArchiveFile=hosts-cli.jsa}) ou avec native-image.
+ * L'écriture de /etc/hosts demande les droits root : lancer avec sudo.
+ *
+ * Codes de sortie : 0 succès, 2 usage, 3 fichier modifié pendant le
+ * traitement, 4 erreur d'entrée/sortie.
+ */
+public class HostsCli {
+    private static final int EXIT_USAGE = 2;
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        Path file = Paths.get(System.getProperty("hosts.file", "/etc/hosts"));
+        boolean dryRun = false;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("--") && !args[i].equals("--")) {
+            switch (args[i]) {
+                case "--file" -> {
+                    if (i + 1 >= args.length) {
+                        return usage("--file attend un chemin");
+                    }
+                    file = Paths.get(args[++i]);
+                }
+                case "--dry-run" -> dryRun = true;
+                default -> {
+                    return usage("Option inconnue : " + args[i]);
+                }
+            }
+            i++;
+        }
+        List<List<String>> commands = split(args, i);
+        if (commands.isEmpty()) {
+            return usage(null);
+        }
+
+        try {
+            if (commands.size() == 1 && commands.get(0).get(0).equals("list")) {
+                list(file, commands.get(0).subList(1, commands.get(0).size()));
+                return HostsHelper.EXIT_OK;
+            }
+            if (commands.size() == 1 && commands.get(0).get(0).equals("import-blocklist")) {
+                return importBlocklist(file, commands.get(0).subList(1, commands.get(0).size()), dryRun);
+            }
+            return edit(file, commands, dryRun);
+        } catch (IllegalArgumentException e) {
+            return usage(e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Erreur d'accès à " + file + " : " + e.getMessage());
+            return HostsHelper.EXIT_IO_ERROR;
+        }
+    }
+
+    private static List<List<String>> split(String[] args, int from) {
+        List<List<String>> commands = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        for (int i = from; i < args.length; i++) {
+            if (args[i].equals("--")) {
+                if (!current.isEmpty()) {
+                    commands.add(current);
+                }
+                current = new ArrayList<>();
+            } else {
+                current.add(args[i]);
+            }
+        }
+        if (!current.isEmpty()) {
+            commands.add(current);
+        }
+        return commands;
+    }
+
+    private static void list(Path file, List<String> args) throws IOException {
+        boolean all = args.contains("--all");
+        String pattern = null;
+        for (String arg : args) {
+            if (!arg.equals("--all")) {
+                pattern = HostsIndex.normalize(arg);
+            }
+        }
+        // Lecture tolérante : un octet hors UTF-8 est affiché remplacé au lieu de faire échouer la commande
+        MappedHostsFile lines = MappedHostsFile.open(file);
+        StringBuilder out = new StringBuilder();
+        for (int n = 0; n < lines.size(); n++) {
+            String text = lines.line(n);
+            HostLine line = HostLine.parse(text);
+            if (!line.isMapping() && !all) {
+                continue;
+            }
+            if (pattern != null && !HostsIndex.normalize(text).contains(pattern)) {
+                continue;
+            }
+            String state = !line.isMapping() ? "   " : line.isCommented() ? "[ ]" : "[x]";
+            out.append(String.format("%6d %s %s%n", n + 1, state, text));
+        }
+        System.out.print(out);
+    }
+
+    /**
+     * Les commandes modifient une copie des lignes ; seule la différence avec
+     * le fichier lu est appliquée, comme le fait le helper : les lignes non
+     * touchées gardent leurs octets et leur fin de ligne, et une ligne modifiée
+     * entre-temps par un autre programme fait échouer l'écriture.
+     */
+    private static int edit(Path file, List<List<String>> commands, boolean dryRun) throws IOException {
+        MappedHostsFile original = MappedHostsFile.open(file);
+        List<String> read = new ArrayList<>(original.size());
+        for (int n = 0; n < original.size(); n++) {
+            read.add(original.line(n));
+        }
+        HostsEditor editor = new HostsEditor(read);
+
+        int changed = 0;
+        for (List<String> command : commands) {
+            if (command.get(0).equals("switch-profile")) {
+                if (command.size() != 2) {
+                    throw new IllegalArgumentException("switch-profile attend un nom de profil");
+                }
+                HostsProfileStore store = HostsProfileStore.defaultStore();
+                List<String> lines = editor.getLines();
+                List<String> target = store.load(command.get(1)).switchFrom(lines, store.loadAll());
+                for (LineDiff.Hunk hunk : LineDiff.diff(LineDiff.Lines.of(lines), LineDiff.Lines.of(target))) {
+                    changed += Math.max(hunk.oldCount, hunk.newCount);
+                }
+                lines.clear();
+                lines.addAll(target);
+            } else if (command.get(0).equals("apply-profile")) {
+                if (command.size() != 2) {
+                    throw new IllegalArgumentException("apply-profile attend un fichier");
+                }
+                changed += editor.applyProfile(Files.readAllLines(Paths.get(command.get(1)), StandardCharsets.UTF_8));
+            } else {
+                changed += editor.apply(command);
+            }
+        }
+
+        if (changed == 0) {
+            System.err.println("Aucune modification.");
+            return HostsHelper.EXIT_OK;
+        }
+        if (dryRun) {
+            System.err.println(changed + " ligne(s) seraient modifiées.");
+            return HostsHelper.EXIT_OK;
+        }
+        LineDiff.Lines edited = LineDiff.Lines.of(editor.getLines());
+        try {
+            HostsHelper.applyPatch(file, HostsPatch.fromDiff(original, edited, LineDiff.diff(original, edited)));
+        } catch (HostsPatch.ConflictException e) {
+            System.err.println(file + " a été modifié pendant le traitement : rien n'a été écrit (" + e.getMessage() + ").");
+            return HostsHelper.EXIT_CONFLICT;
+        }
+        System.err.println(changed + " ligne(s) modifiées.");
+        return HostsHelper.EXIT_OK;
+    }
+
+    private static int importBlocklist(Path file, List<String> args, boolean dryRun) throws IOException {
+        String section = BlocklistImporter.DEFAULT_SECTION;
+        List<Path> sources = new ArrayList<>();
+        for (int n = 0; n < args.size(); n++) {
+            if (args.get(n).equals("--section")) {
+                if (n + 1 >= args.size()) {
+                    throw new IllegalArgumentException("--section attend un nom");
+                }
+                section = args.get(++n);
+            } else {
+                sources.add(Paths.get(args.get(n)));
+            }
+        }
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("import-blocklist attend au moins un fichier");
+        }
+        BlocklistImporter importer = new BlocklistImporter(section, sources);
+        importer.setProgress(stats -> System.err.printf("\r%d ligne(s) lue(s), %d%%",
+                stats.getLinesRead(), stats.getTotalBytes() == 0 ? 100
+                        : Math.min(100, 100 * stats.getBytesRead() / stats.getTotalBytes())));
+
+        FileTime modified = Files.getLastModifiedTime(file);
+        long size = Files.size(file);
+        BlocklistImporter.Stats[] stats = new BlocklistImporter.Stats[1];
+        if (dryRun) {
+            stats[0] = importer.merge(file, OutputStream.nullOutputStream());
+        } else {
+            try {
+                HostsHelper.writeAtomically(file, out -> {
+                    stats[0] = importer.merge(file, out);
+                    if (!Files.getLastModifiedTime(file).equals(modified) || Files.size(file) != size) {
+                        throw new HostsPatch.ConflictException("modifié pendant le traitement");
+                    }
+                });
+            } catch (HostsPatch.ConflictException e) {
+                System.err.println();
+                System.err.println(file + " a été modifié pendant le traitement : rien n'a été écrit.");
+                return HostsHelper.EXIT_CONFLICT;
+            }
+        }
+        System.err.println();
+        System.err.println(stats[0] + (dryRun ? " (simulation, rien n'a été écrit)." : "."));
+        return HostsHelper.EXIT_OK;
+    }
+
+    private static int usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println("Usage : HostsCli [--file /etc/hosts] [--dry-run] commande [arguments] [-- commande ...]");
+        System.err.println("  list [--all] [motif]");
+        System.err.println("  enable NOM...  |  disable NOM...");
+        System.err.println("  add IP NOM [ALIAS...]");
+        System.err.println("  remove NOM...");
+        System.err.println("  apply-profile FICHIER");
+        System.err.println("  switch-profile NOM");
+        System.err.println("  import-blocklist [--section NOM] FICHIER...");
+        return EXIT_USAGE;
+    }
+}
@@ -0,0 +1,175 @@
+package net.arkaine;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Regroupe les modifications du fichier hosts faites pendant une fenêtre de
+ * temps (ou jusqu'à un "Appliquer" explicite) en une seule écriture, exécutée
+ * hors du thread JavaFX. Si l'écriture d'un lot échoue, toutes les entrées du
+ * lot ainsi que celles modifiées depuis sont remises dans leur état précédent.
+ *
+ * Les méthodes publiques sont appelées depuis le thread JavaFX.
+ */
+public class HostsCommitScheduler {
+
+    private static final class PendingEdit {
+        final HostEntry entry;
+        final Runnable undo;
+
+        PendingEdit(HostEntry entry, Runnable undo) {
+            this.entry = entry;
+            this.undo = undo;
+        }
+    }
+
+    private final HostsEditJournal journal;
+    private final ToIntFunction<HostsPatch> writer;
+    private final long delayMillis;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hosts-commit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<PendingEdit> pending = new ArrayList<>();
+    private List<PendingEdit> inFlight = Collections.emptyList();
+    private ScheduledFuture<?> scheduledCommit;
+    private boolean commitRequested;
+
+    private IntConsumer onFailure = status -> { };
+    private Runnable onPendingChanged = () -> { };
+
+    /**
+     * @param delayMillis fenêtre de regroupement ; 0 ou moins pour n'écrire que sur {@link #commitNow()}
+     * @param writer      écrit un patch et retourne le code de sortie de {@link HostsHelper}
+     */
+    public HostsCommitScheduler(HostsEditJournal journal, long delayMillis, ToIntFunction<HostsPatch> writer) {
+        this.journal = journal;
+        this.delayMillis = delayMillis;
+        this.writer = writer;
+    }
+
+    public void setOnFailure(IntConsumer onFailure) {
+        this.onFailure = onFailure;
+    }
+
+    public void setOnPendingChanged(Runnable onPendingChanged) {
+        this.onPendingChanged = onPendingChanged;
+    }
+
+    /**
+     * Enregistre une modification déjà portée dans le journal et dans le modèle.
+     *
+     * @param undo exécuté si l'écriture du lot échoue
+     */
+    public void record(HostEntry entry, Runnable undo) {
+        pending.add(new PendingEdit(entry, undo));
+        entry.setState(HostEntry.State.PENDING);
+        onPendingChanged.run();
+
+        if (delayMillis > 0) {
+            if (scheduledCommit != null) {
+                scheduledCommit.cancel(false);
+            }
+            scheduledCommit = executor.schedule(() -> Platform.runLater(this::commitNow),
+                    delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size() + inFlight.size();
+    }
+
+    public boolean isIdle() {
+        return pending.isEmpty() && inFlight.isEmpty();
+    }
+
+    public void commitNow() {
+        if (!inFlight.isEmpty()) {
+            // Un seul lot à la fois : celui-ci partira à la fin de l'écriture en cours
+            commitRequested = true;
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<PendingEdit> batch = pending;
+        pending = new ArrayList<>();
+        inFlight = batch;
+        HostsPatch patch = journal.drain();
+
+        executor.execute(() -> {
+            int status = writer.applyAsInt(patch);
+            Platform.runLater(() -> complete(batch, status));
+        });
+    }
+
+    private void complete(List<PendingEdit> batch, int status) {
+        inFlight = Collections.emptyList();
+
+        if (status == HostsHelper.EXIT_OK) {
+            Set<HostEntry> stillPending = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (PendingEdit edit : pending) {
+                stillPending.add(edit.entry);
+            }
+            for (PendingEdit edit : batch) {
+                if (!stillPending.contains(edit.entry)) {
+                    edit.entry.setState(HostEntry.State.COMMITTED);
+                }
+            }
+        } else {
+            // Les modifications suivantes reposent sur les indices du lot refusé :
+            // elles sont annulées avec lui, de la plus récente à la plus ancienne
+            journal.drain();
+            rollback(pending);
+            rollback(batch);
+            pending = new ArrayList<>();
+            commitRequested = false;
+        }
+        onPendingChanged.run();
+
+        if (status != HostsHelper.EXIT_OK) {
+            onFailure.accept(status);
+        } else if (commitRequested) {
+            commitRequested = false;
+            commitNow();
+        }
+    }
+
+    private static void rollback(List<PendingEdit> edits) {
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            PendingEdit edit = edits.get(i);
+            edit.undo.run();
+            edit.entry.setState(HostEntry.State.COMMITTED);
+        }
+    }
+
+    /** Écrit de façon synchrone les modifications restantes puis arrête le thread d'écriture. */
+    public void shutdown() {
+        if (scheduledCommit != null) {
+            scheduledCommit.cancel(false);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pending.isEmpty()) {
+            writer.applyAsInt(journal.drain());
+            pending.clear();
+        }
+    }
+}
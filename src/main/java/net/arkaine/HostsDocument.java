@@ -0,0 +1,194 @@
+package net.arkaine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Modèle éditable du fichier hosts, ligne pour ligne (lignes vides comprises).
+ *
+ * Les lignes non modifiées sont lues à la demande dans le {@link MappedHostsFile}
+ * d'origine ; seules les lignes modifiées ou ajoutées sont gardées en mémoire.
+ * Chaque ligne a un identifiant ("handle") stable malgré les insertions et
+ * suppressions : pour une ligne d'origine, c'est son numéro dans l'instantané.
+ * L'état activé/commenté est tenu dans un {@link BitSet} indexé par handle.
+ */
+public class HostsDocument {
+    private final MappedHostsFile source;
+    private int[] handles;
+    private int size;
+    private int nextHandle;
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final BitSet disabled;
+    // handle -> position, reconstruit à la demande après une insertion ou suppression
+    private int[] positions = new int[0];
+    private boolean positionsValid;
+    // Incrémenté à chaque modification, pour détecter un instantané périmé
+    private long version;
+
+    private HostsDocument(MappedHostsFile source) {
+        this.source = source;
+        this.size = source.lineCount();
+        this.nextHandle = size;
+        this.handles = new int[Math.max(16, size + size / 8)];
+        for (int i = 0; i < size; i++) {
+            handles[i] = i;
+        }
+        this.disabled = source.commentedLines();
+    }
+
+    public static HostsDocument load(Path path) throws IOException {
+        return new HostsDocument(MappedHostsFile.open(path));
+    }
+
+    public static HostsDocument of(MappedHostsFile source) {
+        return new HostsDocument(source);
+    }
+
+    public static HostsDocument empty() {
+        return new HostsDocument(MappedHostsFile.empty());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Vue figée des lignes actuelles, lisible depuis un autre thread : seuls
+     * les handles et les lignes modifiées sont copiés, pas le texte du fichier.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(source, Arrays.copyOf(handles, size), new HashMap<>(texts));
+    }
+
+    public static final class Snapshot implements LineDiff.Lines {
+        private final MappedHostsFile source;
+        private final int[] handles;
+        private final Map<Integer, String> texts;
+
+        private Snapshot(MappedHostsFile source, int[] handles, Map<Integer, String> texts) {
+            this.source = source;
+            this.handles = handles;
+            this.texts = texts;
+        }
+
+        @Override
+        public int size() {
+            return handles.length;
+        }
+
+        @Override
+        public String line(int index) {
+            int handle = handles[index];
+            String text = texts.get(handle);
+            return text != null ? text : source.line(handle);
+        }
+
+        public int handleAt(int index) {
+            return handles[index];
+        }
+    }
+
+    public MappedHostsFile getSource() {
+        return source;
+    }
+
+    /** Handles dont le texte diffère de l'instantané (lignes modifiées ou ajoutées). */
+    public Set<Integer> modifiedHandles() {
+        return texts.keySet();
+    }
+
+    /**
+     * @return la position actuelle de la ligne, ou -1 si elle a été supprimée
+     */
+    public int positionOf(int handle) {
+        if (!positionsValid) {
+            positions = new int[nextHandle];
+            Arrays.fill(positions, -1);
+            for (int i = 0; i < size; i++) {
+                positions[handles[i]] = i;
+            }
+            positionsValid = true;
+        }
+        return handle < positions.length ? positions[handle] : -1;
+    }
+
+    public boolean isHandleEnabled(int handle) {
+        return !disabled.get(handle);
+    }
+
+    public int handleAt(int position) {
+        checkIndex(position, size);
+        return handles[position];
+    }
+
+    /** Texte de la ligne tel qu'il sera écrit dans le fichier. */
+    public String line(int position) {
+        return text(handleAt(position));
+    }
+
+    public String text(int handle) {
+        String text = texts.get(handle);
+        return text != null ? text : source.line(handle);
+    }
+
+    public boolean isEnabled(int position) {
+        return !disabled.get(handleAt(position));
+    }
+
+    public void setLine(int position, String text) {
+        int handle = handleAt(position);
+        texts.put(handle, text);
+        disabled.set(handle, text.startsWith("#"));
+        version++;
+    }
+
+    public void insert(int position, String text) {
+        checkIndex(position, size + 1);
+        if (size == handles.length) {
+            handles = Arrays.copyOf(handles, handles.length + handles.length / 2);
+        }
+        System.arraycopy(handles, position, handles, position + 1, size - position);
+        int handle = nextHandle++;
+        handles[position] = handle;
+        size++;
+        if (positionsValid && position == size - 1) {
+            // Ajout en fin de fichier : aucune position existante ne bouge
+            if (handle >= positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(16, handle + handle / 2));
+            }
+            positions[handle] = position;
+        } else {
+            positionsValid = false;
+        }
+        texts.put(handle, text);
+        disabled.set(handle, text.startsWith("#"));
+        version++;
+    }
+
+    /** @return le handle de la ligne supprimée */
+    public int remove(int position) {
+        int handle = handleAt(position);
+        System.arraycopy(handles, position + 1, handles, position, size - position - 1);
+        size--;
+        texts.remove(handle);
+        disabled.clear(handle);
+        positionsValid = false;
+        version++;
+        return handle;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Ligne " + index + " hors de [0, " + bound + ")");
+        }
+    }
+}
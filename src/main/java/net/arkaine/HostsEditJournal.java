@@ -0,0 +1,50 @@
+package net.arkaine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal des lignes modifiées depuis la dernière écriture du fichier hosts.
+ * Seules les lignes touchées sont envoyées à l'écriture, pas le fichier entier.
+ */
+public class HostsEditJournal {
+    private final List<HostsPatch.Edit> edits = new ArrayList<>();
+
+    public synchronized void set(int index, String oldLine, String newLine) {
+        // Fusionne avec une modification précédente de la même ligne tant
+        // qu'aucune insertion/suppression n'a décalé les indices entre-temps
+        for (int i = edits.size() - 1; i >= 0; i--) {
+            HostsPatch.Edit previous = edits.get(i);
+            if (previous.getKind() != HostsPatch.Kind.SET) {
+                break;
+            }
+            if (previous.getIndex() == index) {
+                edits.remove(i);
+                oldLine = previous.getOldLine();
+                break;
+            }
+        }
+        if (!oldLine.equals(newLine)) {
+            edits.add(new HostsPatch.Edit(HostsPatch.Kind.SET, index, oldLine, newLine));
+        }
+    }
+
+    public synchronized void insert(int index, String newLine) {
+        edits.add(new HostsPatch.Edit(HostsPatch.Kind.INSERT, index, null, newLine));
+    }
+
+    public synchronized void delete(int index, String oldLine) {
+        edits.add(new HostsPatch.Edit(HostsPatch.Kind.DELETE, index, oldLine, null));
+    }
+
+    public synchronized boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /** Retourne les modifications en attente sous forme de patch et vide le journal. */
+    public synchronized HostsPatch drain() {
+        HostsPatch patch = new HostsPatch(edits);
+        edits.clear();
+        return patch;
+    }
+}
@@ -0,0 +1,261 @@
+package net.arkaine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Modifications du fichier hosts par nom d'hôte, sur une liste de lignes en
+ * mémoire et sans dépendance JavaFX. Les lignes gardent le format de
+ * {@link HostEntry} : une correspondance désactivée est précédée de "#".
+ *
+ * Chaque opération renvoie le nombre de lignes touchées ; l'appelant écrit
+ * le résultat en une seule fois.
+ */
+public class HostsEditor {
+    private final List<String> lines;
+
+    public HostsEditor(List<String> lines) {
+        this.lines = new ArrayList<>(lines);
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /** Active ou désactive toutes les correspondances qui contiennent {@code name}. */
+    public int setEnabled(String name, boolean enabled) {
+        String key = HostsIndex.normalize(name);
+        int changed = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            HostLine line = HostLine.parse(lines.get(i));
+            if (line.isMapping() && line.isCommented() == enabled && contains(line, key)) {
+                lines.set(i, HostLine.withEnabled(lines.get(i), enabled));
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Ajoute une correspondance activée. Si la même ligne existe déjà,
+     * désactivée, elle est réactivée plutôt que dupliquée.
+     */
+    public int add(String ip, List<String> names) {
+        if (!HostLine.isIpAddress(ip) || names.isEmpty()) {
+            throw new IllegalArgumentException("Correspondance invalide : " + ip + " " + names);
+        }
+        List<String> wanted = normalize(names);
+        for (int i = 0; i < lines.size(); i++) {
+            HostLine line = HostLine.parse(lines.get(i));
+            if (line.isMapping() && line.getIp().equals(ip) && normalize(line.getHostnames()).equals(wanted)) {
+                if (!line.isCommented()) {
+                    return 0;
+                }
+                lines.set(i, HostLine.withEnabled(lines.get(i), true));
+                return 1;
+            }
+        }
+        lines.add(ip + "\t" + String.join(" ", names));
+        return 1;
+    }
+
+    /**
+     * Retire {@code name} de toutes les correspondances, activées ou non ; une
+     * ligne qui n'a plus de nom est supprimée.
+     */
+    public int remove(String name) {
+        String key = HostsIndex.normalize(name);
+        int changed = 0;
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            HostLine line = HostLine.parse(lines.get(i));
+            if (!line.isMapping() || !contains(line, key)) {
+                continue;
+            }
+            List<String> kept = new ArrayList<>();
+            for (String hostname : line.getHostnames()) {
+                if (!HostsIndex.normalize(hostname).equals(key)) {
+                    kept.add(hostname);
+                }
+            }
+            if (kept.isEmpty()) {
+                lines.remove(i);
+            } else {
+                String text = line.getIp() + "\t" + String.join(" ", kept)
+                        + (line.getComment() != null ? " # " + line.getComment() : "");
+                lines.set(i, HostLine.withEnabled(text, !line.isCommented()));
+            }
+            changed++;
+        }
+        return changed;
+    }
+
+    /** Active ou désactive, en une passe, les correspondances aux positions données. */
+    public int setEnabledAt(int[] positions, boolean enabled) {
+        int changed = 0;
+        for (int position : positions) {
+            changed += setEnabledAt(position, enabled);
+        }
+        return changed;
+    }
+
+    private int setEnabledAt(int position, boolean enabled) {
+        HostLine line = HostLine.parse(lines.get(position));
+        if (!line.isMapping() || line.isCommented() != enabled) {
+            return 0;
+        }
+        lines.set(position, HostLine.withEnabled(lines.get(position), enabled));
+        return 1;
+    }
+
+    /** Supprime, en une passe, les lignes aux positions données (triées, sans doublon). */
+    public int removeAt(int[] positions) {
+        List<String> kept = new ArrayList<>(lines.size());
+        int next = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (next < positions.length && positions[next] == i) {
+                next++;
+            } else {
+                kept.add(lines.get(i));
+            }
+        }
+        int removed = lines.size() - kept.size();
+        lines.clear();
+        lines.addAll(kept);
+        return removed;
+    }
+
+    /** Active ou désactive toutes les correspondances de la section qui contient {@code position}. */
+    public int setSectionEnabled(int position, boolean enabled) {
+        int[] block = section(position);
+        int changed = 0;
+        for (int i = block[0] + 1; i < block[1]; i++) {
+            changed += setEnabledAt(i, enabled);
+        }
+        return changed;
+    }
+
+    /** Supprime la section qui contient {@code position}, en-tête et ligne de fin compris. */
+    public int removeSection(int position) {
+        int[] block = section(position);
+        lines.subList(block[0], block[1]).clear();
+        return block[1] - block[0];
+    }
+
+    /**
+     * Échange la section qui contient {@code position} avec le bloc voisin :
+     * la section adjacente, ou à défaut une seule ligne.
+     *
+     * @return la nouvelle position de l'en-tête de la section
+     */
+    public int moveSection(int position, boolean up) {
+        int[] block = section(position);
+        int[] neighbour;
+        if (up) {
+            if (block[0] == 0) {
+                return block[0];
+            }
+            neighbour = HostsSection.blockAt(lines, block[0] - 1);
+            if (neighbour == null) {
+                neighbour = new int[]{block[0] - 1, block[0]};
+            }
+        } else {
+            if (block[1] == lines.size()) {
+                return block[0];
+            }
+            neighbour = HostsSection.blockAt(lines, block[1]);
+            if (neighbour == null) {
+                neighbour = new int[]{block[1], block[1] + 1};
+            }
+        }
+        int[] first = up ? neighbour : block;
+        int[] second = up ? block : neighbour;
+        Collections.rotate(lines.subList(first[0], second[1]), second[1] - second[0]);
+        return up ? neighbour[0] : block[0] + neighbour[1] - neighbour[0];
+    }
+
+    private int[] section(int position) {
+        int[] block = HostsSection.blockAt(lines, position);
+        if (block == null) {
+            throw new IllegalArgumentException("La ligne " + (position + 1) + " n'appartient à aucune section");
+        }
+        return block;
+    }
+
+    /**
+     * Exécute une commande : {@code enable NOM}, {@code disable NOM},
+     * {@code add IP NOM [ALIAS...]} ou {@code remove NOM}.
+     *
+     * @return le nombre de lignes touchées
+     * @throws IllegalArgumentException si la commande est inconnue ou incomplète
+     */
+    public int apply(List<String> command) {
+        if (command.isEmpty()) {
+            throw new IllegalArgumentException("Commande vide");
+        }
+        String verb = command.get(0);
+        List<String> args = command.subList(1, command.size());
+        switch (verb) {
+            case "enable":
+            case "disable":
+                requireArgs(verb, args, 1);
+                int changed = 0;
+                for (String name : args) {
+                    changed += setEnabled(name, verb.equals("enable"));
+                }
+                return changed;
+            case "add":
+                requireArgs(verb, args, 2);
+                return add(args.get(0), args.subList(1, args.size()));
+            case "remove":
+                requireArgs(verb, args, 1);
+                int removed = 0;
+                for (String name : args) {
+                    removed += remove(name);
+                }
+                return removed;
+            default:
+                throw new IllegalArgumentException("Commande inconnue : " + verb);
+        }
+    }
+
+    /**
+     * Applique un profil : une commande par ligne, lignes vides et
+     * commentaires "#" ignorés.
+     */
+    public int applyProfile(List<String> profile) {
+        int changed = 0;
+        for (String entry : profile) {
+            String text = entry.trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+            changed += apply(Arrays.asList(text.split("\\s+")));
+        }
+        return changed;
+    }
+
+    private static void requireArgs(String verb, List<String> args, int min) {
+        if (args.size() < min) {
+            throw new IllegalArgumentException("Arguments manquants pour " + verb);
+        }
+    }
+
+    private static boolean contains(HostLine line, String key) {
+        for (String hostname : line.getHostnames()) {
+            if (HostsIndex.normalize(hostname).equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> normalize(List<String> names) {
+        List<String> normalized = new ArrayList<>(names.size());
+        for (String name : names) {
+            normalized.add(HostsIndex.normalize(name));
+        }
+        return normalized;
+    }
+}
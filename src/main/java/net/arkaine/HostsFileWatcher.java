@@ -0,0 +1,75 @@
+package net.arkaine;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Surveille le fichier hosts et signale ses modifications externes. Le
+ * répertoire parent est surveillé (et non le fichier) pour détecter aussi les
+ * remplacements par renommage ; les rafales d'événements d'une même écriture
+ * sont regroupées en un seul appel.
+ */
+public class HostsFileWatcher implements AutoCloseable {
+    private static final long DEBOUNCE_MS = 200;
+
+    private final WatchService watchService;
+    private final Path fileName;
+    private final Runnable onChange;
+
+    public HostsFileWatcher(Path file, Runnable onChange) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        this.fileName = absolute.getFileName();
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(this::watch, "hosts-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = isRelevant(key);
+                if (!changed) {
+                    continue;
+                }
+                // Laisse l'écrivain finir avant de relire le fichier
+                Thread.sleep(DEBOUNCE_MS);
+                WatchKey more;
+                while ((more = watchService.poll()) != null) {
+                    isRelevant(more);
+                }
+                onChange.run();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Arrêt de la surveillance
+        }
+    }
+
+    private boolean isRelevant(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
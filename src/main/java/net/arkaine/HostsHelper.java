@@ -0,0 +1,345 @@
+package net.arkaine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processus lancé une seule fois par session avec les droits root (via sudo)
+ * et piloté par {@link HostsHelperClient} sur son entrée/sortie standard.
+ *
+ * Protocole : à son démarrage le helper écrit {@link #READY}. Chaque requête
+ * est un octet de commande suivi de sa charge ; chaque réponse commence par un
+ * octet de statut ({@link #EXIT_OK}, {@link #EXIT_CONFLICT}, {@link #EXIT_IO_ERROR}).
+ * {@link #CMD_WRITE_STREAM} reçoit le nouveau contenu en trames {@code [int n, n octets]}
+ * terminées par 0 (ou -1 pour annuler) : ni le client ni le helper ne le
+ * tiennent en mémoire. Une requête mal formée reçoit {@link #EXIT_IO_ERROR}
+ * sans arrêter le helper.
+ * Le helper ne manipule que le fichier reçu en argument au lancement.
+ */
+public class HostsHelper {
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_CONFLICT = 3;
+    public static final int EXIT_IO_ERROR = 4;
+    /** Helper arrêté ou injoignable (jamais renvoyé par le helper lui-même). */
+    public static final int EXIT_UNAVAILABLE = 5;
+
+    static final int READY = 0x484F5354; // "HOST"
+
+    static final byte CMD_PATCH_LINES = 1;
+    static final byte CMD_WRITE_FILE = 2;
+    static final byte CMD_READ_FILE = 3;
+    static final byte CMD_STAT = 4;
+    static final byte CMD_QUIT = 5;
+    static final byte CMD_WRITE_STREAM = 6;
+
+    /** Producteur d'un contenu écrit au fil de l'eau. */
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path target = Paths.get(args.length > 0 ? args[0] : "/etc/hosts");
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+        // Le canal de sortie est réservé au protocole
+        System.setOut(new PrintStream(System.err, true));
+
+        out.writeInt(READY);
+        out.flush();
+        try {
+            boolean running = true;
+            while (running) {
+                try {
+                    running = serve(target, in, out);
+                } catch (EOFException e) {
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    // Trame mal formée : la commande échoue, le helper reste disponible
+                    System.err.println("Commande refusée : " + e);
+                    out.writeByte(EXIT_IO_ERROR);
+                }
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // Client parti : fin de session
+        }
+        out.flush();
+    }
+
+    /** @return false après {@link #CMD_QUIT} */
+    private static boolean serve(Path target, DataInputStream in, DataOutputStream out) throws IOException {
+        byte command = in.readByte();
+        switch (command) {
+            case CMD_PATCH_LINES: {
+                HostsPatch patch = HostsPatch.readFrom(in);
+                out.writeByte(run(() -> applyPatch(target, patch)));
+                return true;
+            }
+            case CMD_WRITE_FILE: {
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                out.writeByte(run(() -> writeAtomically(target, content)));
+                return true;
+            }
+            case CMD_READ_FILE: {
+                byte[] content;
+                try {
+                    content = Files.readAllBytes(target);
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    out.writeByte(EXIT_IO_ERROR);
+                    return true;
+                }
+                out.writeByte(EXIT_OK);
+                out.writeInt(content.length);
+                out.write(content);
+                return true;
+            }
+            case CMD_STAT: {
+                try {
+                    long size = Files.size(target);
+                    long modified = Files.getLastModifiedTime(target).toMillis();
+                    out.writeByte(EXIT_OK);
+                    out.writeLong(size);
+                    out.writeLong(modified);
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    out.writeByte(EXIT_IO_ERROR);
+                }
+                return true;
+            }
+            case CMD_WRITE_STREAM: {
+                long expectedSize = in.readLong();
+                long expectedModified = in.readLong();
+                out.writeByte(run(() -> writeStreamed(target, in, expectedSize, expectedModified)));
+                return true;
+            }
+            case CMD_QUIT:
+                out.writeByte(EXIT_OK);
+                return false;
+            default:
+                throw new IOException("Commande inconnue : " + command);
+        }
+    }
+
+    private interface FileOperation {
+        void run() throws IOException;
+    }
+
+    private static int run(FileOperation operation) {
+        try {
+            operation.run();
+            return EXIT_OK;
+        } catch (HostsPatch.ConflictException e) {
+            System.err.println(e.getMessage());
+            return EXIT_CONFLICT;
+        } catch (IOException | RuntimeException e) {
+            System.err.println(e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+    }
+
+    /**
+     * Applique le patch en ne réécrivant que les lignes modifiées : les autres
+     * sont recopiées avec leurs octets et leur fin de ligne d'origine, même si
+     * le fichier n'est pas en UTF-8. Les lignes nouvelles prennent la fin de
+     * ligne de la première ligne du fichier.
+     */
+    public static void applyPatch(Path target, HostsPatch patch) throws IOException {
+        if (patch.isEmpty()) {
+            return;
+        }
+        MappedHostsFile file = MappedHostsFile.open(target);
+        PatchedLines lines = new PatchedLines(file);
+        patch.applyTo(lines);
+        writeAtomically(target, lines::writeTo);
+    }
+
+    /**
+     * Lignes du fichier vues comme une liste modifiable : une ligne d'origine
+     * n'est qu'un indice dans le fichier projeté, décodée seulement quand le
+     * patch la vérifie.
+     */
+    private static final class PatchedLines extends AbstractList<String> {
+        private final MappedHostsFile file;
+        // Integer : ligne d'origine ; String : ligne écrite par le patch
+        private final List<Object> lines;
+
+        PatchedLines(MappedHostsFile file) {
+            this.file = file;
+            this.lines = new ArrayList<>(file.size() + 16);
+            for (int i = 0; i < file.size(); i++) {
+                lines.add(i);
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            Object line = lines.get(index);
+            return line instanceof Integer original ? file.line(original) : (String) line;
+        }
+
+        @Override
+        public int size() {
+            return lines.size();
+        }
+
+        @Override
+        public String set(int index, String line) {
+            String previous = get(index);
+            // Ligne réécrite à l'identique (bloc remplacé d'un tenant) : ses octets d'origine sont gardés
+            if (!line.equals(previous)) {
+                lines.set(index, line);
+            }
+            return previous;
+        }
+
+        @Override
+        public void add(int index, String line) {
+            lines.add(index, line);
+        }
+
+        @Override
+        public String remove(int index) {
+            String previous = get(index);
+            lines.remove(index);
+            return previous;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            int count = file.size();
+            byte[] separator = (count > 0 && file.separator(0).equals("\r\n") ? "\r\n" : "\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            // Un fichier sans retour final le reste
+            boolean finalSeparator = count == 0 || !file.separator(count - 1).isEmpty();
+            for (int i = 0; i < lines.size(); i++) {
+                boolean last = i == lines.size() - 1;
+                Object line = lines.get(i);
+                if (line instanceof Integer original) {
+                    file.copyLine(original, out);
+                    if (!last && file.separator(original).isEmpty()) {
+                        out.write(separator);
+                    }
+                } else {
+                    out.write(((String) line).getBytes(StandardCharsets.UTF_8));
+                    if (!last || finalSeparator) {
+                        out.write(separator);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remplace le fichier par le contenu reçu en trames, si sa taille et sa date
+     * n'ont pas changé depuis la lecture du client. Le contrôle a lieu une fois
+     * tout reçu, juste avant le renommage : un import de plusieurs secondes ne
+     * peut pas écraser une modification faite pendant ce temps.
+     */
+    static void writeStreamed(Path target, DataInputStream in, long expectedSize, long expectedModified)
+            throws IOException {
+        writeAtomically(target, out -> {
+            copyChunks(in, out);
+            if (Files.size(target) != expectedSize
+                    || Files.getLastModifiedTime(target).toMillis() != expectedModified) {
+                throw new HostsPatch.ConflictException("Fichier modifié pendant l'envoi");
+            }
+        });
+    }
+
+    /**
+     * Recopie les trames jusqu'à la trame vide. Après un échec d'écriture les
+     * trames restantes sont encore lues, pour que le client reçoive son statut
+     * au bon endroit du flux.
+     */
+    private static void copyChunks(DataInputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        IOException failure = null;
+        int length;
+        while ((length = in.readInt()) != 0) {
+            if (length < 0) {
+                throw new IOException("Écriture annulée par le client");
+            }
+            while (length > 0) {
+                int n = in.read(buffer, 0, Math.min(length, buffer.length));
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                length -= n;
+                if (failure == null) {
+                    try {
+                        out.write(buffer, 0, n);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        writeAtomically(target, out -> out.write(content));
+    }
+
+    /**
+     * Écrit dans un fichier temporaire du même répertoire puis le renomme sur la
+     * cible. Si le renommage est impossible (fichier monté, comme /etc/hosts dans
+     * un conteneur), le contenu est recopié sur place. Un échec du producteur
+     * laisse la cible intacte.
+     */
+    static void writeAtomically(Path target, ContentWriter writer) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "." + target.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                // Pas de close sur le flux tamponné : il fermerait le canal avant force()
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+                writer.writeTo(out);
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(target));
+            } catch (UnsupportedOperationException e) {
+                // Système de fichiers non POSIX : on garde les droits par défaut
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            } catch (IOException e) {
+                // Renommage refusé : repli sur une réécriture en place
+            }
+            try (FileChannel source = FileChannel.open(tmp, StandardOpenOption.READ);
+                 FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE,
+                         StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = source.size();
+                for (long position = 0; position < size; ) {
+                    position += source.transferTo(position, size - position, channel);
+                }
+                channel.force(true);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package net.arkaine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Client du {@link HostsHelper} : le processus privilégié est démarré une
+ * fois, puis chaque écriture n'est qu'un échange de trames sur ses flux
+ * standard, sans nouveau processus ni nouvelle authentification sudo.
+ */
+public class HostsHelperClient implements AutoCloseable {
+    private static final long READY_TIMEOUT_SECONDS = 15;
+    // Invite de sudo reconnue sur sa sortie d'erreur ; le premier caractère n'y apparaît qu'une fois
+    private static final String SUDO_PROMPT = "<hosts-manager:sudo>";
+
+    /** Taille et date de modification du fichier géré. */
+    public static final class Stat {
+        public final long size;
+        public final long lastModifiedMillis;
+
+        Stat(long size, long lastModifiedMillis) {
+            this.size = size;
+            this.lastModifiedMillis = lastModifiedMillis;
+        }
+    }
+
+    private final Process process;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private boolean broken;
+
+    private HostsHelperClient(Process process) {
+        this.process = process;
+        this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    }
+
+    /**
+     * Lance le helper avec sudo. Le mot de passe est transmis sur l'entrée
+     * standard de sudo, jamais sur une ligne de commande, et seulement quand
+     * sudo le demande : voir {@link #forwardErrors}.
+     */
+    public static HostsHelperClient startPrivileged(String hostsFile, String password) throws IOException {
+        List<String> command = new ArrayList<>(List.of("sudo", "-k", "-S", "-p", SUDO_PROMPT));
+        command.addAll(helperCommand(hostsFile));
+        return start(command, password);
+    }
+
+    /**
+     * Lance le helper sans élévation de privilèges, sur un fichier accessible à
+     * l'utilisateur : même protocole, pour le développement et les tests sans root.
+     */
+    public static HostsHelperClient startLocal(String hostsFile) throws IOException {
+        return start(helperCommand(hostsFile), null);
+    }
+
+    private static HostsHelperClient start(List<String> command, String password) throws IOException {
+        Process process = new ProcessBuilder(command)
+                .redirectError(password != null ? ProcessBuilder.Redirect.PIPE : ProcessBuilder.Redirect.INHERIT)
+                .start();
+        HostsHelperClient client = new HostsHelperClient(process);
+        if (password != null) {
+            Thread errors = new Thread(() -> client.forwardErrors(password), "hosts-helper-stderr");
+            errors.setDaemon(true);
+            errors.start();
+        }
+        try {
+            // sudo redemande le mot de passe s'il est faux : on n'attend pas indéfiniment
+            int ready = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return client.in.readInt();
+                } catch (IOException e) {
+                    return -1;
+                }
+            }).get(READY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (ready != HostsHelper.READY) {
+                throw new IOException("Le helper privilégié n'a pas démarré (authentification refusée ?)");
+            }
+            return client;
+        } catch (InterruptedException | ExecutionException | TimeoutException | IOException e) {
+            process.destroyForcibly();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e instanceof IOException ? (IOException) e
+                    : new IOException("Le helper privilégié n'a pas démarré", e);
+        }
+    }
+
+    /**
+     * Recopie la sortie d'erreur de sudo et du helper sur celle de l'application,
+     * et répond à l'invite de sudo. Sans invite (sudo configuré sans mot de passe)
+     * rien n'est écrit : le mot de passe ne peut pas se retrouver dans le flux du
+     * protocole. Une seconde invite signifie un mot de passe refusé : le processus
+     * est arrêté plutôt que d'attendre l'expiration du délai.
+     */
+    private void forwardErrors(String password) {
+        byte[] prompt = SUDO_PROMPT.getBytes(StandardCharsets.US_ASCII);
+        int matched = 0;
+        boolean answered = false;
+        try (InputStream errors = process.getErrorStream()) {
+            int b;
+            while ((b = errors.read()) >= 0) {
+                if (b == prompt[matched]) {
+                    if (++matched < prompt.length) {
+                        continue;
+                    }
+                    matched = 0;
+                    if (answered) {
+                        process.destroyForcibly();
+                        return;
+                    }
+                    answered = true;
+                    // Le helper n'est pas encore lancé : aucune commande ne peut s'intercaler
+                    synchronized (out) {
+                        out.write((password + "\n").getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                    continue;
+                }
+                if (matched > 0) {
+                    System.err.write(prompt, 0, matched);
+                    matched = b == prompt[0] ? 1 : 0;
+                    if (matched > 0) {
+                        continue;
+                    }
+                }
+                System.err.write(b);
+                if (b == '\n') {
+                    System.err.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Processus terminé
+        }
+    }
+
+    private static List<String> helperCommand(String hostsFile) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        try {
+            // Répertoire des classes ou jar contenant l'application
+            command.add(new File(HostsHelper.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+        command.add(HostsHelper.class.getName());
+        command.add(hostsFile);
+        return command;
+    }
+
+    public boolean isAlive() {
+        return !broken && process.isAlive();
+    }
+
+    /** @return le statut du helper, ou {@link HostsHelper#EXIT_UNAVAILABLE} s'il ne répond plus */
+    public synchronized int patch(HostsPatch patch) {
+        try {
+            out.writeByte(HostsHelper.CMD_PATCH_LINES);
+            patch.writeTo(out);
+            out.flush();
+            return in.readUnsignedByte();
+        } catch (IOException e) {
+            return unavailable(e);
+        }
+    }
+
+    /** Remplace tout le contenu du fichier en une écriture atomique. */
+    public synchronized int writeFile(byte[] content) {
+        try {
+            out.writeByte(HostsHelper.CMD_WRITE_FILE);
+            out.writeInt(content.length);
+            out.write(content);
+            out.flush();
+            return in.readUnsignedByte();
+        } catch (IOException e) {
+            return unavailable(e);
+        }
+    }
+
+    /**
+     * Remplace le contenu du fichier par ce qu'écrit {@code writer}, envoyé au
+     * helper au fil de l'eau. Le helper refuse l'écriture
+     * ({@link HostsHelper#EXIT_CONFLICT}) si le fichier ne correspond plus à
+     * {@code expected}. Une exception du producteur annule l'écriture et est
+     * propagée ; le helper reste utilisable.
+     */
+    public synchronized int writeStreamed(Stat expected, HostsHelper.ContentWriter writer) throws IOException {
+        try {
+            out.writeByte(HostsHelper.CMD_WRITE_STREAM);
+            out.writeLong(expected.size);
+            out.writeLong(expected.lastModifiedMillis);
+        } catch (IOException e) {
+            return unavailable(e);
+        }
+        ChunkedOutputStream chunks = new ChunkedOutputStream(out);
+        try {
+            writer.writeTo(chunks);
+            chunks.finish();
+        } catch (PipeException e) {
+            return unavailable(e.pipeFailure);
+        } catch (IOException | RuntimeException e) {
+            // Trame d'annulation : le helper supprime son fichier temporaire et répond
+            try {
+                out.writeInt(-1);
+                out.flush();
+                in.readUnsignedByte();
+            } catch (IOException pipe) {
+                unavailable(pipe);
+            }
+            throw e;
+        }
+        try {
+            return in.readUnsignedByte();
+        } catch (IOException e) {
+            return unavailable(e);
+        }
+    }
+
+    public synchronized byte[] readFile() throws IOException {
+        out.writeByte(HostsHelper.CMD_READ_FILE);
+        out.flush();
+        if (in.readUnsignedByte() != HostsHelper.EXIT_OK) {
+            throw new IOException("Lecture du fichier hosts impossible");
+        }
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        return content;
+    }
+
+    public synchronized Stat stat() throws IOException {
+        out.writeByte(HostsHelper.CMD_STAT);
+        out.flush();
+        if (in.readUnsignedByte() != HostsHelper.EXIT_OK) {
+            throw new IOException("Impossible de lire les attributs du fichier hosts");
+        }
+        return new Stat(in.readLong(), in.readLong());
+    }
+
+    /** Échec d'écriture sur le canal du helper, distinct des échecs du producteur. */
+    private static final class PipeException extends IOException {
+        final IOException pipeFailure;
+
+        PipeException(IOException pipeFailure) {
+            super(pipeFailure);
+            this.pipeFailure = pipeFailure;
+        }
+    }
+
+    /** Découpe le flux en trames {@code [int n, n octets]} pour {@link HostsHelper#CMD_WRITE_STREAM}. */
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int count;
+
+        ChunkedOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Les trames partent pleines : un flush du producteur n'envoie rien
+        }
+
+        @Override
+        public void close() {
+            // Fin du contenu signalée par finish(), pas par le producteur
+        }
+
+        void finish() throws IOException {
+            flushChunk();
+            try {
+                out.writeInt(0);
+                out.flush();
+            } catch (IOException e) {
+                throw new PipeException(e);
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            try {
+                out.writeInt(count);
+                out.write(buffer, 0, count);
+            } catch (IOException e) {
+                throw new PipeException(e);
+            }
+            count = 0;
+        }
+    }
+
+    private int unavailable(IOException e) {
+        System.err.println("Helper privilégié injoignable : " + e.getMessage());
+        broken = true;
+        return HostsHelper.EXIT_UNAVAILABLE;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (isAlive()) {
+                out.writeByte(HostsHelper.CMD_QUIT);
+                out.flush();
+                in.readUnsignedByte();
+            }
+            process.waitFor(2, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            // Helper déjà arrêté
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            process.destroy();
+        }
+    }
+}
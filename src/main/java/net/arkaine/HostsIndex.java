@@ -0,0 +1,310 @@
+package net.arkaine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Index nom d'hôte → lignes et IP → lignes d'un {@link HostsDocument}.
+ *
+ * Pour rester compact sur un fichier d'un million de lignes, l'index ne garde
+ * aucune chaîne : chaque clé est réduite à un hachage 64 bits associé aux
+ * handles des lignes, et les correspondances sont vérifiées en relisant la
+ * ligne au moment de la recherche. Les lignes commentées sont indexées aussi,
+ * si bien qu'activer ou désactiver une entrée ne touche pas l'index.
+ */
+public class HostsIndex {
+    private final HostsDocument document;
+    private final HashTable byName = new HashTable();
+    private final HashTable byIp = new HashTable();
+
+    private HostsIndex(HostsDocument document) {
+        this.document = document;
+    }
+
+    /**
+     * Indexe les lignes de l'instantané du document. Ne lit que le
+     * {@link MappedHostsFile}, immuable : peut tourner hors du thread JavaFX.
+     * {@link #sync()} doit ensuite être appelé sur le thread du document.
+     */
+    public static HostsIndex build(HostsDocument document) {
+        HostsIndex index = new HostsIndex(document);
+        MappedHostsFile source = document.getSource();
+        for (int handle = 0; handle < source.lineCount(); handle++) {
+            index.add(handle, source.line(handle));
+        }
+        return index;
+    }
+
+    /** Rejoue les lignes modifiées ou ajoutées depuis l'instantané. */
+    public void sync() {
+        MappedHostsFile source = document.getSource();
+        for (int handle : document.modifiedHandles()) {
+            if (handle < source.lineCount()) {
+                remove(handle, source.line(handle));
+            }
+            add(handle, document.text(handle));
+        }
+    }
+
+    public void update(int handle, String oldText, String newText) {
+        if (oldText != null) {
+            remove(handle, oldText);
+        }
+        if (newText != null) {
+            add(handle, newText);
+        }
+    }
+
+    private void add(int handle, String text) {
+        HostLine line = HostLine.parse(text);
+        if (!line.isMapping()) {
+            return;
+        }
+        byIp.add(hash(line.getIp()), handle);
+        for (String name : line.getHostnames()) {
+            byName.add(hash(name), handle);
+        }
+    }
+
+    private void remove(int handle, String text) {
+        HostLine line = HostLine.parse(text);
+        if (!line.isMapping()) {
+            return;
+        }
+        byIp.remove(hash(line.getIp()), handle);
+        for (String name : line.getHostnames()) {
+            byName.remove(hash(name), handle);
+        }
+    }
+
+    /** Positions (triées) des lignes, actives ou non, qui déclarent ce nom. */
+    public int[] linesForName(String name) {
+        return positions(byName, name, true);
+    }
+
+    /** Positions (triées) des lignes, actives ou non, qui portent cette adresse. */
+    public int[] linesForIp(String ip) {
+        return positions(byIp, ip, false);
+    }
+
+    /**
+     * Ligne qui résout ce nom : comme la libc, la première ligne active du
+     * fichier qui le déclare.
+     *
+     * @return la position de la ligne, ou -1 si le nom n'est pas résolu
+     */
+    public int resolve(String name) {
+        for (int position : linesForName(name)) {
+            if (document.isEnabled(position)) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Noms déclarés par plusieurs lignes actives. Les conflits (adresses
+     * différentes) sont signalés en premier.
+     *
+     * @return nom → positions des lignes actives qui le déclarent
+     */
+    public Map<String, int[]> duplicates(int limit) {
+        Map<String, int[]> conflicts = new LinkedHashMap<>();
+        Map<String, int[]> duplicates = new LinkedHashMap<>();
+        byName.forEachMultiKey(key -> {
+            if (conflicts.size() + duplicates.size() >= limit) {
+                return;
+            }
+            // Plusieurs noms différents peuvent partager le même hachage : on regroupe par nom réel
+            Map<String, List<Integer>> lines = new LinkedHashMap<>();
+            Map<String, Set<String>> ips = new LinkedHashMap<>();
+            for (int handle : byName.handles(key)) {
+                int position = document.positionOf(handle);
+                if (position < 0 || !document.isHandleEnabled(handle)) {
+                    continue;
+                }
+                HostLine line = HostLine.parse(document.text(handle));
+                for (String name : line.getHostnames()) {
+                    String normalized = normalize(name);
+                    if (hash(normalized) == key) {
+                        lines.computeIfAbsent(normalized, n -> new ArrayList<>()).add(position);
+                        ips.computeIfAbsent(normalized, n -> new LinkedHashSet<>()).add(line.getIp());
+                    }
+                }
+            }
+            lines.forEach((name, positions) -> {
+                if (positions.size() > 1) {
+                    int[] sorted = positions.stream().mapToInt(Integer::intValue).sorted().toArray();
+                    (ips.get(name).size() > 1 ? conflicts : duplicates).put(name, sorted);
+                }
+            });
+        });
+        Map<String, int[]> result = new LinkedHashMap<>(conflicts);
+        result.putAll(duplicates);
+        return result;
+    }
+
+    private int[] positions(HashTable table, String key, boolean isName) {
+        String normalized = normalize(key);
+        int[] handles = table.handles(hash(normalized));
+        int[] positions = new int[handles.length];
+        int count = 0;
+        for (int handle : handles) {
+            int position = document.positionOf(handle);
+            if (position >= 0 && matches(HostLine.parse(document.text(handle)), normalized, isName)) {
+                positions[count++] = position;
+            }
+        }
+        positions = Arrays.copyOf(positions, count);
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    private static boolean matches(HostLine line, String key, boolean isName) {
+        if (!line.isMapping()) {
+            return false;
+        }
+        if (!isName) {
+            return normalize(line.getIp()).equals(key);
+        }
+        for (String name : line.getHostnames()) {
+            if (normalize(name).equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String normalize(String key) {
+        return key.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** FNV-1a 64 bits sur la clé en minuscules ; 0 est réservé aux cases vides. */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= Character.toLowerCase(key.charAt(i));
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Table à adressage ouvert : hachage → liste chaînée de handles, le tout
+     * en tableaux de primitives.
+     */
+    private static final class HashTable {
+        private long[] keys = new long[1024];
+        private int[] heads = new int[1024];
+        private int usedSlots;
+        private int[] postingHandle = new int[1024];
+        private int[] postingNext = new int[1024];
+        private int postingCount;
+        private int freePosting = -1;
+
+        void add(long key, int handle) {
+            if ((usedSlots + 1) * 10 > keys.length * 6) {
+                resize();
+            }
+            int slot = slot(key);
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                heads[slot] = -1;
+                usedSlots++;
+            }
+            int posting = newPosting();
+            postingHandle[posting] = handle;
+            postingNext[posting] = heads[slot];
+            heads[slot] = posting;
+        }
+
+        void remove(long key, int handle) {
+            int slot = slot(key);
+            if (keys[slot] == 0) {
+                return;
+            }
+            int previous = -1;
+            for (int p = heads[slot]; p >= 0; previous = p, p = postingNext[p]) {
+                if (postingHandle[p] == handle) {
+                    if (previous < 0) {
+                        heads[slot] = postingNext[p];
+                    } else {
+                        postingNext[previous] = postingNext[p];
+                    }
+                    postingNext[p] = freePosting;
+                    freePosting = p;
+                    return;
+                }
+            }
+        }
+
+        int[] handles(long key) {
+            int slot = slot(key);
+            if (keys[slot] == 0) {
+                return new int[0];
+            }
+            int count = 0;
+            for (int p = heads[slot]; p >= 0; p = postingNext[p]) {
+                count++;
+            }
+            int[] result = new int[count];
+            int i = 0;
+            for (int p = heads[slot]; p >= 0; p = postingNext[p]) {
+                result[i++] = postingHandle[p];
+            }
+            return result;
+        }
+
+        /** Appelle {@code action} pour chaque clé associée à au moins deux lignes. */
+        void forEachMultiKey(LongConsumer action) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0 && heads[slot] >= 0 && postingNext[heads[slot]] >= 0) {
+                    action.accept(keys[slot]);
+                }
+            }
+        }
+
+        private int slot(long key) {
+            int mask = keys.length - 1;
+            int slot = (int) (key ^ (key >>> 32)) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private int newPosting() {
+            if (freePosting >= 0) {
+                int posting = freePosting;
+                freePosting = postingNext[posting];
+                return posting;
+            }
+            if (postingCount == postingHandle.length) {
+                postingHandle = Arrays.copyOf(postingHandle, postingCount * 2);
+                postingNext = Arrays.copyOf(postingNext, postingCount * 2);
+            }
+            return postingCount++;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldHeads = heads;
+            keys = new long[oldKeys.length * 2];
+            heads = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    heads[slot] = oldHeads[i];
+                }
+            }
+        }
+    }
+}
@@ -1,34 +1,90 @@
 package net.arkaine;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 public class HostsManager extends Application {
-    private static final String HOSTS_FILE = "/etc/hosts";
+    /** Transformation de l'ensemble des lignes, calculée hors du thread JavaFX. */
+    private interface LinesEdit {
+        List<String> apply(List<String> lines) throws IOException;
+    }
+
+    private static final String HOSTS_FILE = System.getProperty("hosts.file", "/etc/hosts");
+    // Helper sans sudo sur un fichier de l'utilisateur (développement, tests sans root)
+    private static final boolean LOCAL_HELPER = Boolean.getBoolean("hosts.helper.local");
     private ListView<HostEntry> hostsListView;
     private TextField newEntryField;
-    private List<HostEntry> hostEntries;
-    private static String sudoPassword = null;  // Stockage statique du mot de passe
+    private LazyHostEntryList hostEntries;
+    private static volatile HostsHelperClient helper = null;  // Helper privilégié de la session
+    // Fenêtre de regroupement des écritures, en ms (0 : uniquement sur "Appliquer")
+    private static final long COMMIT_DELAY_MS = Long.getLong("hosts.commit.delay", 500);
+    private final HostsEditJournal journal = new HostsEditJournal();
+    private HostsCommitScheduler commitScheduler;
+    private Label pendingLabel;
+    private HostsFileWatcher watcher;
+    private boolean refreshRequested;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hosts-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HostsProfileStore profileStore = HostsProfileStore.defaultStore();
+    private ComboBox<String> profileBox;
+    private TextField searchField;
+    // Réécriture en bloc (profil, sélection, section) en cours ou attendant les écritures en attente
+    private boolean rewriting;
+    private Runnable deferredRewrite;
+    private Label searchLabel;
+    private HostsSearchIndex searchIndex;
+    private HostsSearchIndex.Result lastSearch;
+    private FilteredHostEntryList filteredEntries;
+    // Chaque frappe ou reconstruction incrémente son compteur : les tâches périmées s'arrêtent
+    private final AtomicLong searchGeneration = new AtomicLong();
+    private final AtomicLong searchIndexGeneration = new AtomicLong();
+    private final ListChangeListener<HostEntry> structureListener = change -> onEntriesChanged();
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hosts-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Reconstruction de l'index après une rafale de modifications, en ms
+    private static final long SEARCH_INDEX_DELAY_MS = Long.getLong("hosts.search.index.delay", 300);
+    private final ScheduledExecutorService indexExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hosts-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> scheduledIndex;
     @Override
     public void start(Stage primaryStage) {
-        hostEntries = new ArrayList<>();
-
         // Demander le mot de passe au démarrage
-        if (!requestSudoPassword()) {
+        if (!startHelper()) {
             System.exit(1);
             return;
         }
@@ -38,6 +94,11 @@ public class HostsManager extends Application {
 
         hostsListView = new ListView<>();
         hostsListView.setPrefHeight(300);
+        // Hauteur fixe : la ListView n'a pas à mesurer les lignes d'un gros fichier
+        hostsListView.setFixedCellSize(24);
+        // Sélection multiple (Ctrl) et par plage (Maj) pour les opérations en bloc
+        hostsListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        hostsListView.setContextMenu(createBulkMenu());
 
         newEntryField = new TextField();
         newEntryField.setPromptText("Entrez une nouvelle ligne hosts");
@@ -49,62 +110,433 @@ public class HostsManager extends Application {
         Button refreshButton = new Button("Rafraîchir");
         refreshButton.setOnAction(e -> refreshHostsFile());
 
-        HBox buttonBox = new HBox(10, addButton, refreshButton);
+        // Écrit immédiatement les modifications en attente
+        Button applyButton = new Button("Appliquer");
+        pendingLabel = new Label();
+
+        commitScheduler = new HostsCommitScheduler(journal, COMMIT_DELAY_MS, patch -> {
+            HostsHelperClient client = helper;
+            return client != null ? client.patch(patch) : HostsHelper.EXIT_UNAVAILABLE;
+        });
+        commitScheduler.setOnPendingChanged(this::updatePendingLabel);
+        commitScheduler.setOnFailure(this::handleCommitFailure);
+        applyButton.setOnAction(e -> commitScheduler.commitNow());
+
+        // Listes de blocage : fusion en flux dans une section, en une écriture
+        Button importButton = new Button("Importer une liste...");
+        importButton.setOnAction(e -> importBlocklist(primaryStage));
+
+        HBox buttonBox = new HBox(10, addButton, refreshButton, applyButton, importButton, pendingLabel);
+
+        // Recherche de la ligne qui résout un nom, via l'index
+        TextField resolveField = new TextField();
+        resolveField.setPromptText("Nom d'hôte à résoudre");
+        Button resolveButton = new Button("Résoudre");
+        resolveButton.setOnAction(e -> resolveHostname(resolveField.getText()));
+        resolveField.setOnAction(e -> resolveHostname(resolveField.getText()));
+        Button duplicatesButton = new Button("Doublons");
+        duplicatesButton.setOnAction(e -> showDuplicates());
+
+        HBox lookupBox = new HBox(10, resolveField, resolveButton, duplicatesButton);
+
+        // Profils nommés : bascule calculée en mémoire, écrite en un seul patch
+        profileBox = new ComboBox<>();
+        profileBox.setPromptText("Profil");
+        reloadProfileNames();
+        Button switchProfileButton = new Button("Basculer");
+        switchProfileButton.setOnAction(e -> switchProfile(profileBox.getValue()));
+        Button saveProfileButton = new Button("Enregistrer le profil...");
+        saveProfileButton.setOnAction(e -> saveProfile());
+        HBox profileRow = new HBox(10, profileBox, switchProfileButton, saveProfileButton);
+
+        // Filtrage instantané par nom ou adresse, sur un index construit en arrière-plan
+        searchField = new TextField();
+        searchField.setPromptText("Rechercher un nom ou une adresse");
+        searchLabel = new Label();
+        searchField.textProperty().addListener((obs, oldText, newText) -> search(newText));
+        HBox searchBox = new HBox(10, searchField, searchLabel);
 
         loadHostsFile();
 
-        hostsListView.setCellFactory(lv -> new HostEntryCell(this::saveHostsFile));
+        // Rafraîchissement automatique sur modification externe du fichier
+        try {
+            watcher = new HostsFileWatcher(Paths.get(HOSTS_FILE), () -> Platform.runLater(this::refreshHostsFile));
+        } catch (IOException e) {
+            System.err.println("Surveillance de " + HOSTS_FILE + " indisponible : " + e.getMessage());
+        }
+
+        hostsListView.setCellFactory(lv -> new HostEntryCell(this::toggleEntry));
 
         root.getChildren().addAll(
-                new Label("Fichier /etc/hosts:"),
+                new Label("Fichier " + HOSTS_FILE + ":"),
+                searchBox,
                 hostsListView,
                 newEntryField,
-                buttonBox
+                buttonBox,
+                lookupBox,
+                profileRow
         );
 
         Scene scene = new Scene(root, 600, 400);
         primaryStage.setTitle("Gestionnaire de fichier hosts");
         primaryStage.setScene(scene);
+        primaryStage.setOnCloseRequest(e -> {
+            commitScheduler.shutdown();
+            if (helper != null) {
+                helper.close();
+            }
+            if (watcher != null) {
+                try {
+                    watcher.close();
+                } catch (IOException ex) {
+                    // Fermeture de l'application : rien à faire
+                }
+            }
+        });
         primaryStage.show();
     }
 
 
-    private void refreshHostsFile() {
+    private void reloadProfileNames() {
         try {
-            // Sauvegarde les états actuels des cases
-            List<Boolean> previousStates = hostsListView.getItems().stream()
-                    .map(HostEntry::isEnabled)
-                    .collect(Collectors.toList());
+            profileBox.getItems().setAll(profileStore.names());
+        } catch (IOException e) {
+            System.err.println("Lecture des profils impossible : " + e.getMessage());
+        }
+    }
+
+    private void saveProfile() {
+        TextInputDialog dialog = new TextInputDialog(profileBox.getValue());
+        dialog.setTitle("Enregistrer le profil");
+        dialog.setHeaderText("Les entrées actives et les sections entièrement actives seront enregistrées.");
+        dialog.setContentText("Nom du profil :");
+        String name = dialog.showAndWait().map(String::trim).orElse("");
+        if (name.isEmpty()) {
+            return;
+        }
+        HostsDocument.Snapshot snapshot = hostEntries.getDocument().snapshot();
+        try {
+            profileStore.save(HostsProfile.capture(name, lines(snapshot)));
+            reloadProfileNames();
+            profileBox.setValue(name);
+        } catch (IOException | IllegalArgumentException e) {
+            showError("Impossible d'enregistrer le profil", e.getMessage());
+        }
+    }
+
+    private static List<String> lines(LineDiff.Lines snapshot) {
+        List<String> lines = new ArrayList<>(snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            lines.add(snapshot.line(i));
+        }
+        return lines;
+    }
+
+    private void switchProfile(String name) {
+        if (name == null) {
+            return;
+        }
+        rewrite("Profil « " + name + " »",
+                lines -> profileStore.load(name).switchFrom(lines, profileStore.loadAll()), () -> { });
+    }
+
+    /** Positions dans le document des lignes sélectionnées, triées. */
+    private int[] selectedPositions() {
+        List<Integer> selected = hostsListView.getSelectionModel().getSelectedIndices();
+        int[] positions = new int[selected.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = documentPosition(selected.get(i));
+        }
+        return Arrays.stream(positions).sorted().distinct().toArray();
+    }
+
+    private void setSelectionEnabled(boolean enabled) {
+        int[] positions = selectedPositions();
+        if (positions.length == 0) {
+            return;
+        }
+        rewrite((enabled ? "Activation" : "Désactivation") + " de la sélection", lines -> {
+            HostsEditor editor = new HostsEditor(lines);
+            editor.setEnabledAt(positions, enabled);
+            return editor.getLines();
+        }, () -> { });
+    }
+
+    private void removeSelection() {
+        int[] positions = selectedPositions();
+        if (positions.length == 0 || !confirm("Supprimer " + positions.length + " ligne(s) ?")) {
+            return;
+        }
+        rewrite("Suppression de la sélection", lines -> {
+            HostsEditor editor = new HostsEditor(lines);
+            editor.removeAt(positions);
+            return editor.getLines();
+        }, () -> hostsListView.getSelectionModel().clearSelection());
+    }
 
-            // Vide la liste actuelle
-            hostEntries.clear();
-            hostsListView.getItems().clear();
+    /** Position de la ligne courante, point de départ des opérations sur une section. */
+    private int focusedPosition() {
+        int index = hostsListView.getSelectionModel().getSelectedIndex();
+        return index < 0 ? -1 : documentPosition(index);
+    }
 
-            // Recharge le fichier
-            List<String> lines = Files.readAllLines(Paths.get(HOSTS_FILE));
+    private void setSectionEnabled(boolean enabled) {
+        int position = focusedPosition();
+        if (position < 0) {
+            return;
+        }
+        rewrite((enabled ? "Activation" : "Désactivation") + " de la section", lines -> {
+            HostsEditor editor = new HostsEditor(lines);
+            editor.setSectionEnabled(position, enabled);
+            return editor.getLines();
+        }, () -> { });
+    }
 
-            for (int i = 0; i < lines.size(); i++) {
-                String line = lines.get(i).trim();
-                if (!line.isEmpty()) {
-                    HostEntry entry = new HostEntry(line);
+    private void removeSection() {
+        int position = focusedPosition();
+        if (position < 0 || !confirm("Supprimer la section qui contient la ligne " + (position + 1) + " ?")) {
+            return;
+        }
+        rewrite("Suppression de la section", lines -> {
+            HostsEditor editor = new HostsEditor(lines);
+            editor.removeSection(position);
+            return editor.getLines();
+        }, () -> hostsListView.getSelectionModel().clearSelection());
+    }
 
-                    // Restaure l'état précédent si possible
-                    if (i < previousStates.size()) {
-                        entry.setEnabled(previousStates.get(i));
-                    }
+    private void moveSection(boolean up) {
+        int position = focusedPosition();
+        if (position < 0) {
+            return;
+        }
+        // Lue sur le thread JavaFX après l'application : publiée par runLater
+        int[] header = {-1};
+        rewrite("Déplacement de la section", lines -> {
+            HostsEditor editor = new HostsEditor(lines);
+            header[0] = editor.moveSection(position, up);
+            return editor.getLines();
+        }, () -> {
+            if (filteredEntries == null) {
+                // La section reste sélectionnée pour enchaîner les déplacements
+                hostsListView.getSelectionModel().clearAndSelect(header[0]);
+                hostsListView.scrollTo(header[0]);
+            }
+        });
+    }
 
-                    hostEntries.add(entry);
+    /**
+     * Réécrit le document en une seule opération : la modification est
+     * calculée sur une copie des lignes hors du thread JavaFX, écrite en un
+     * patch vérifié par le helper, puis portée dans la liste par différence,
+     * ce qui ne rafraîchit que les cellules touchées.
+     *
+     * @param onApplied exécuté sur le thread JavaFX une fois la liste à jour
+     */
+    private void rewrite(String description, LinesEdit edit, Runnable onApplied) {
+        LazyHostEntryList entries = hostEntries;
+        long version = entries.getDocument().version();
+        if (rewriting) {
+            pendingLabel.setText("Écriture en cours, réessayez dans un instant");
+            return;
+        }
+        if (!commitScheduler.isIdle()) {
+            // Les modifications en attente partent d'abord, la réécriture suit sur le même état
+            deferredRewrite = () -> {
+                if (entries == hostEntries && entries.getDocument().version() == version) {
+                    rewrite(description, edit, onApplied);
+                } else {
+                    showError(description + " abandonnée", "La liste a changé entre-temps : recommencez.");
                 }
+            };
+            commitScheduler.commitNow();
+            return;
+        }
+        rewriting = true;
+        HostsDocument.Snapshot current = entries.getDocument().snapshot();
+
+        refreshExecutor.execute(() -> {
+            long start = System.nanoTime();
+            LineDiff.Lines target;
+            try {
+                target = LineDiff.Lines.of(edit.apply(lines(current)));
+            } catch (IOException | IllegalArgumentException e) {
+                Platform.runLater(() -> {
+                    rewriting = false;
+                    showError(description + " impossible", e.getMessage());
+                });
+                return;
+            }
+            List<LineDiff.Hunk> hunks = LineDiff.diff(current, target);
+            int changed = 0;
+            for (LineDiff.Hunk hunk : hunks) {
+                changed += Math.max(hunk.oldCount, hunk.newCount);
             }
+            HostsHelperClient client = helper;
+            int status = hunks.isEmpty() ? HostsHelper.EXIT_OK
+                    : client != null ? client.patch(HostsPatch.fromDiff(current, target, hunks))
+                    : HostsHelper.EXIT_UNAVAILABLE;
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            int changedLines = changed;
+
+            Platform.runLater(() -> {
+                rewriting = false;
+                if (status != HostsHelper.EXIT_OK) {
+                    handleCommitFailure(status);
+                    refreshHostsFile();
+                    return;
+                }
+                if (entries != hostEntries || entries.getDocument().version() != version) {
+                    refreshHostsFile();
+                } else if (!hunks.isEmpty()) {
+                    entries.applyDiff(hunks, target);
+                    onApplied.run();
+                }
+                pendingLabel.setText(description + " : " + changedLines + " ligne(s) en " + elapsedMs + " ms");
+            });
+        });
+    }
 
-            hostsListView.getItems().addAll(hostEntries);
+    private void importBlocklist(Stage owner) {
+        if (rewriting || !commitScheduler.isIdle()) {
+            pendingLabel.setText("Écriture en cours, réessayez dans un instant");
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Listes de blocage à importer");
+        List<File> files = chooser.showOpenMultipleDialog(owner);
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog(BlocklistImporter.DEFAULT_SECTION);
+        dialog.setTitle("Importer une liste de blocage");
+        dialog.setHeaderText("Le contenu actuel de la section sera remplacé.");
+        dialog.setContentText("Section :");
+        String section = dialog.showAndWait().map(String::trim).orElse("");
+        if (section.isEmpty()) {
+            return;
+        }
+        BlocklistImporter importer;
+        try {
+            importer = new BlocklistImporter(section, files.stream().map(File::toPath).toList());
+        } catch (IllegalArgumentException e) {
+            showError("Import impossible", e.getMessage());
+            return;
+        }
+        HostsHelperClient client = helper;
+        if (client == null) {
+            handleCommitFailure(HostsHelper.EXIT_UNAVAILABLE);
+            return;
+        }
+        rewriting = true;
+        // Une mise à jour de l'étiquette à la fois : la lecture n'attend pas le thread JavaFX
+        AtomicBoolean progressQueued = new AtomicBoolean();
+        importer.setProgress(stats -> {
+            String text = "Import : " + stats.getLinesRead() + " ligne(s) lue(s), " + stats.getImported()
+                    + " entrée(s)";
+            if (progressQueued.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    progressQueued.set(false);
+                    pendingLabel.setText(text);
+                });
+            }
+        });
+
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            BlocklistImporter.Stats[] stats = new BlocklistImporter.Stats[1];
+            int status;
+            String failure = null;
+            try {
+                HostsHelperClient.Stat stat = client.stat();
+                status = client.writeStreamed(stat, out -> stats[0] = importer.merge(Paths.get(HOSTS_FILE), out));
+            } catch (IOException e) {
+                status = HostsHelper.EXIT_IO_ERROR;
+                failure = e.getMessage();
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            int result = status;
+            String error = failure;
+            Platform.runLater(() -> {
+                rewriting = false;
+                if (error != null) {
+                    pendingLabel.setText("");
+                    showError("Import impossible", error);
+                } else if (result != HostsHelper.EXIT_OK) {
+                    pendingLabel.setText("");
+                    handleCommitFailure(result);
+                } else {
+                    pendingLabel.setText("Section « " + section + " » : " + stats[0] + " en " + elapsedMs + " ms");
+                }
+                refreshHostsFile();
+            });
+        }, "hosts-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-        } catch (IOException e) {
-            showError("Erreur lors du rafraîchissement", e.getMessage());
+    private boolean confirm(String question) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, question, ButtonType.OK, ButtonType.CANCEL);
+        alert.setTitle("Confirmation");
+        alert.setHeaderText(null);
+        return alert.showAndWait().filter(ButtonType.OK::equals).isPresent();
+    }
+
+    private void refreshHostsFile() {
+        if (!commitScheduler.isIdle()) {
+            // Relecture reportée : les modifications en attente reposent sur les positions actuelles
+            refreshRequested = true;
+            commitScheduler.commitNow();
+            return;
+        }
+        LazyHostEntryList entries = hostEntries;
+        long version = entries.getDocument().version();
+        LineDiff.Lines current = entries.getDocument().snapshot();
+
+        // Relecture et différence hors du thread JavaFX
+        refreshExecutor.execute(() -> {
+            try {
+                MappedHostsFile file = MappedHostsFile.open(Paths.get(HOSTS_FILE));
+                List<LineDiff.Hunk> hunks = LineDiff.diff(current, file);
+                Platform.runLater(() -> applyRefresh(entries, version, file, hunks));
+            } catch (IOException e) {
+                Platform.runLater(() -> showError("Erreur lors du rafraîchissement", e.getMessage()));
+            }
+        });
+    }
+
+    private void applyRefresh(LazyHostEntryList entries, long version, MappedHostsFile file,
+                              List<LineDiff.Hunk> hunks) {
+        if (entries != hostEntries || entries.getDocument().version() != version || !commitScheduler.isIdle()) {
+            // Le modèle a changé pendant le calcul : on recommence sur l'état actuel
+            refreshHostsFile();
+            return;
+        }
+        int changed = 0;
+        for (LineDiff.Hunk hunk : hunks) {
+            changed += Math.max(hunk.oldCount, hunk.newCount);
+        }
+        if (changed > Math.max(1000, file.size() / 2)) {
+            // Fichier presque entièrement remplacé : plus simple de tout recharger
+            showEntries(new LazyHostEntryList(HostsDocument.of(file)));
+        } else if (!hunks.isEmpty()) {
+            entries.applyDiff(hunks, file);
         }
     }
 
 
+    private boolean startHelper() {
+        if (LOCAL_HELPER) {
+            try {
+                helper = HostsHelperClient.startLocal(HOSTS_FILE);
+                return true;
+            } catch (IOException e) {
+                showError("Impossible de démarrer le helper local", e.getMessage());
+                return false;
+            }
+        }
+        return requestSudoPassword();
+    }
+
     private boolean requestSudoPassword() {
         Stage dialog = new Stage();
         dialog.initModality(Modality.APPLICATION_MODAL);
@@ -128,8 +560,13 @@ public class HostsManager extends Application {
         final boolean[] result = {false};
         Runnable validatePassword = () -> {
             String password = passwordField.getText();
-            if (SudoAuthenticator.authenticate(password)) {
-                sudoPassword = password;
+            // Le mot de passe sert une seule fois, à démarrer le helper : il n'est pas conservé
+            HostsHelperClient client = SudoAuthenticator.startHelper(HOSTS_FILE, password);
+            if (client != null) {
+                if (helper != null) {
+                    helper.close();
+                }
+                helper = client;
                 result[0] = true;
                 dialog.close();
             } else {
@@ -143,50 +580,271 @@ public class HostsManager extends Application {
         return result[0];
     }
 
-    private boolean saveHostsFile(List<String> lines) {
-        if (sudoPassword != null) {
-            String content = String.join("\n", lines);
-            if (SudoAuthenticator.writeToHostsFile(content, sudoPassword)) {
-                return true;
-            }
+    private ContextMenu createBulkMenu() {
+        MenuItem enableSelection = new MenuItem("Activer la sélection");
+        enableSelection.setOnAction(e -> setSelectionEnabled(true));
+        MenuItem disableSelection = new MenuItem("Désactiver la sélection");
+        disableSelection.setOnAction(e -> setSelectionEnabled(false));
+        MenuItem removeSelection = new MenuItem("Supprimer la sélection");
+        removeSelection.setOnAction(e -> removeSelection());
+
+        MenuItem enableSection = new MenuItem("Activer la section");
+        enableSection.setOnAction(e -> setSectionEnabled(true));
+        MenuItem disableSection = new MenuItem("Désactiver la section");
+        disableSection.setOnAction(e -> setSectionEnabled(false));
+        MenuItem removeSection = new MenuItem("Supprimer la section");
+        removeSection.setOnAction(e -> removeSection());
+        MenuItem moveSectionUp = new MenuItem("Monter la section");
+        moveSectionUp.setOnAction(e -> moveSection(true));
+        MenuItem moveSectionDown = new MenuItem("Descendre la section");
+        moveSectionDown.setOnAction(e -> moveSection(false));
+
+        return new ContextMenu(enableSelection, disableSelection, removeSelection, new SeparatorMenuItem(),
+                enableSection, disableSection, removeSection, moveSectionUp, moveSectionDown);
+    }
+
+    private boolean toggleEntry(int viewIndex) {
+        if (rewriting) {
+            return false;
+        }
+        MultipleSelectionModel<HostEntry> selection = hostsListView.getSelectionModel();
+        if (selection.getSelectedIndices().size() > 1 && selection.isSelected(viewIndex)) {
+            // Case cochée dans une sélection multiple : toute la sélection suit, en une écriture
+            setSelectionEnabled(hostEntries.get(documentPosition(viewIndex)).isEnabled());
+            return false;
+        }
+        int index = documentPosition(viewIndex);
+        HostEntry entry = hostEntries.get(index);
+        String previousLine = hostEntries.getDocument().line(index);
+        journal.set(index, previousLine, entry.toString());
+        hostEntries.setLine(index, entry.toString());
+        LazyHostEntryList entries = hostEntries;
+        commitScheduler.record(entry, () -> {
+            entry.setEnabled(!previousLine.startsWith("#"));
+            entries.setLine(index, previousLine);
+        });
+        return true;
+    }
+
+    private void updatePendingLabel() {
+        int count = commitScheduler.getPendingCount();
+        pendingLabel.setText(count == 0 ? "" : count + " modification(s) en attente");
+        if (count == 0 && deferredRewrite != null) {
+            Runnable rewrite = deferredRewrite;
+            deferredRewrite = null;
+            rewrite.run();
         }
-        // Si l'écriture échoue, on redemande le mot de passe
-        if (requestSudoPassword()) {
-            String content = String.join("\n", lines);
-            return SudoAuthenticator.writeToHostsFile(content, sudoPassword);
+        if (count == 0 && refreshRequested) {
+            refreshRequested = false;
+            refreshHostsFile();
+        }
+    }
+
+    private void handleCommitFailure(int status) {
+        if (status == HostsHelper.EXIT_CONFLICT) {
+            showError("Le fichier hosts a été modifié par ailleurs",
+                    "Les modifications ont été annulées. Rafraîchissez la liste avant de réessayer.");
+        } else if (status == HostsHelper.EXIT_IO_ERROR) {
+            showError("Erreur lors de l'écriture du fichier hosts",
+                    "Les modifications ont été annulées. Voir la sortie d'erreur pour le détail.");
+        } else {
+            // Helper arrêté : on le relance après authentification
+            showError("Helper privilégié indisponible", "Les modifications ont été annulées.");
+            startHelper();
         }
-        return false;
     }
 
     private void loadHostsFile() {
         try {
-            List<String> lines = Files.readAllLines(Paths.get(HOSTS_FILE));
-            for (String line : lines) {
-                if (!line.trim().isEmpty()) {
-                    hostEntries.add(new HostEntry(line));
-                }
-            }
-            hostsListView.getItems().addAll(hostEntries);
+            // Projection en mémoire : les entrées sont créées à l'affichage
+            showEntries(new LazyHostEntryList(HostsDocument.load(Paths.get(HOSTS_FILE))));
         } catch (IOException e) {
+            showEntries(new LazyHostEntryList(HostsDocument.empty()));
             showError("Erreur lors de la lecture du fichier hosts", e.getMessage());
         }
     }
 
-    private void addNewEntry() {
-        String newEntry = newEntryField.getText().trim();
-        if (!newEntry.isEmpty()) {
-            List<String> allLines = new ArrayList<>();
-            for (HostEntry entry : hostEntries) {
-                allLines.add(entry.toString());
+    private void showEntries(LazyHostEntryList entries) {
+        if (hostEntries != null) {
+            hostEntries.removeListener(structureListener);
+        }
+        hostEntries = entries;
+        entries.addListener(structureListener);
+        searchIndex = null;
+        lastSearch = null;
+        filteredEntries = null;
+        hostsListView.setItems(entries);
+        indexHostsFile(entries);
+        buildSearchIndex(entries, 0);
+    }
+
+    private void onEntriesChanged() {
+        if (filteredEntries != null && lastSearch != null) {
+            // Les handles sont stables : seules les positions du filtre sont recalculées
+            showSearchResult(lastSearch, -1);
+        }
+        // L'index courant reste valable en attendant : les handles sont stables
+        buildSearchIndex(hostEntries, SEARCH_INDEX_DELAY_MS);
+    }
+
+    /** Position dans le document de la ligne affichée à l'indice {@code index} de la ListView. */
+    private int documentPosition(int index) {
+        return filteredEntries != null ? filteredEntries.positionAt(index) : index;
+    }
+
+    /**
+     * Reconstruit l'index de recherche {@code delayMillis} après le dernier
+     * appel : une rafale de modifications ne copie le document et ne relance
+     * la construction qu'une fois, et une construction périmée s'arrête.
+     */
+    private void buildSearchIndex(LazyHostEntryList entries, long delayMillis) {
+        long generation = searchIndexGeneration.incrementAndGet();
+        if (scheduledIndex != null) {
+            scheduledIndex.cancel(false);
+        }
+        scheduledIndex = indexExecutor.schedule(() -> Platform.runLater(() -> {
+            if (searchIndexGeneration.get() != generation) {
+                return;
             }
-            allLines.add(newEntry);
+            // Copie prise sur le thread JavaFX, seul à modifier le document
+            HostsDocument.Snapshot snapshot = entries.getDocument().snapshot();
+            indexExecutor.execute(() -> {
+                HostsSearchIndex index = HostsSearchIndex.build(snapshot,
+                        () -> searchIndexGeneration.get() != generation);
+                if (index != null) {
+                    Platform.runLater(() -> {
+                        if (searchIndexGeneration.get() == generation) {
+                            searchIndex = index;
+                            lastSearch = null;
+                            search(searchField.getText());
+                        }
+                    });
+                }
+            });
+        }), delayMillis, TimeUnit.MILLISECONDS);
+    }
 
-            if (saveHostsFile(allLines)) {
-                HostEntry entry = new HostEntry(newEntry);
-                hostEntries.add(entry);
-                hostsListView.getItems().add(entry);
-                newEntryField.clear();
+    private void search(String text) {
+        long generation = searchGeneration.incrementAndGet();
+        if (text == null || text.isBlank()) {
+            lastSearch = null;
+            filteredEntries = null;
+            hostsListView.setItems(hostEntries);
+            searchLabel.setText("");
+            return;
+        }
+        HostsSearchIndex index = searchIndex;
+        if (index == null) {
+            // La recherche sera relancée à la fin de l'indexation
+            searchLabel.setText("Indexation en cours...");
+            return;
+        }
+        HostsSearchIndex.Result previous = lastSearch;
+        searchExecutor.execute(() -> {
+            long start = System.nanoTime();
+            BooleanSupplier stale = () -> searchGeneration.get() != generation;
+            HostsSearchIndex.Result result = index.search(text, previous, stale);
+            if (result == null) {
+                return;
             }
+            Platform.runLater(() -> {
+                if (!stale.getAsBoolean() && index == searchIndex) {
+                    showSearchResult(result, start);
+                }
+            });
+        });
+    }
+
+    private void showSearchResult(HostsSearchIndex.Result result, long startNanos) {
+        HostsDocument document = hostEntries.getDocument();
+        int[] handles = result.getHandles();
+        int[] positions = new int[handles.length];
+        int count = 0;
+        for (int handle : handles) {
+            int position = document.positionOf(handle);
+            if (position >= 0) {
+                positions[count++] = position;
+            }
+        }
+        // Une ligne peut correspondre par plusieurs de ses noms
+        positions = Arrays.stream(positions, 0, count).sorted().distinct().toArray();
+
+        lastSearch = result;
+        filteredEntries = new FilteredHostEntryList(hostEntries, positions);
+        hostsListView.setItems(filteredEntries);
+        if (startNanos >= 0) {
+            searchLabel.setText(positions.length + " ligne(s) en "
+                    + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        }
+    }
+
+    private void indexHostsFile(LazyHostEntryList entries) {
+        // L'index est construit depuis l'instantané immuable, hors du thread JavaFX
+        Thread indexer = new Thread(() -> {
+            HostsIndex index = HostsIndex.build(entries.getDocument());
+            Platform.runLater(() -> entries.setIndex(index));
+        }, "hosts-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    private void resolveHostname(String name) {
+        HostsIndex index = hostEntries.getIndex();
+        if (name.isBlank()) {
+            return;
+        }
+        if (index == null) {
+            showError("Indexation en cours", "Réessayez dans un instant.");
+            return;
+        }
+        int position = index.resolve(name);
+        if (position < 0) {
+            int[] lines = index.linesForName(name);
+            showError("Nom non résolu", lines.length == 0
+                    ? name + " n'est déclaré dans aucune ligne."
+                    : name + " n'est déclaré que dans des lignes désactivées : " + formatLines(lines));
+            return;
+        }
+        // La ligne doit être visible : on quitte le filtre de recherche
+        searchField.clear();
+        hostsListView.getSelectionModel().clearAndSelect(position);
+        hostsListView.scrollTo(position);
+    }
+
+    private void showDuplicates() {
+        HostsIndex index = hostEntries.getIndex();
+        if (index == null) {
+            showError("Indexation en cours", "Réessayez dans un instant.");
+            return;
+        }
+        Map<String, int[]> duplicates = index.duplicates(100);
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, int[]> duplicate : duplicates.entrySet()) {
+            content.append(duplicate.getKey()).append(" : lignes ")
+                    .append(formatLines(duplicate.getValue())).append("\n");
+        }
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Doublons");
+        alert.setHeaderText(duplicates.isEmpty() ? "Aucun nom déclaré plusieurs fois"
+                : duplicates.size() + " nom(s) déclaré(s) par plusieurs lignes actives (conflits d'adresse en tête)");
+        alert.setContentText(content.toString());
+        alert.showAndWait();
+    }
+
+    private static String formatLines(int[] positions) {
+        // Numéros de ligne à partir de 1, comme dans un éditeur
+        return Arrays.toString(Arrays.stream(positions).map(p -> p + 1).toArray());
+    }
+
+    private void addNewEntry() {
+        String newEntry = newEntryField.getText().trim();
+        if (!newEntry.isEmpty() && !rewriting) {
+            int index = hostEntries.size();
+            journal.insert(index, newEntry);
+            hostEntries.insertLine(index, newEntry);
+            newEntryField.clear();
+            LazyHostEntryList entries = hostEntries;
+            commitScheduler.record(hostEntries.get(index), () -> entries.removeLine(index));
         }
     }
 
@@ -0,0 +1,156 @@
+package net.arkaine;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Suite ordonnée de modifications de lignes du fichier hosts.
+ * Chaque modification porte l'ancien contenu de la ligne pour que
+ * l'application du patch échoue plutôt que d'écraser une édition externe.
+ */
+public class HostsPatch {
+
+    public enum Kind { SET, INSERT, DELETE }
+
+    public static final class Edit {
+        private final Kind kind;
+        private final int index;
+        private final String oldLine;
+        private final String newLine;
+
+        Edit(Kind kind, int index, String oldLine, String newLine) {
+            this.kind = kind;
+            this.index = index;
+            this.oldLine = oldLine;
+            this.newLine = newLine;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOldLine() {
+            return oldLine;
+        }
+
+        public String getNewLine() {
+            return newLine;
+        }
+    }
+
+    /** Le fichier ne correspond plus à l'état sur lequel le patch a été construit. */
+    public static class ConflictException extends IOException {
+        public ConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private final List<Edit> edits;
+
+    HostsPatch(List<Edit> edits) {
+        this.edits = Collections.unmodifiableList(new ArrayList<>(edits));
+    }
+
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /**
+     * Patch qui transforme {@code a} en {@code b}, d'après les blocs de
+     * {@link LineDiff#diff}. Les lignes remplacées sont vérifiées à
+     * l'application, comme pour les modifications du journal.
+     */
+    public static HostsPatch fromDiff(LineDiff.Lines a, LineDiff.Lines b, List<LineDiff.Hunk> hunks) {
+        List<Edit> edits = new ArrayList<>();
+        // Du dernier bloc au premier : les indices des blocs précédents restent valables
+        for (int h = hunks.size() - 1; h >= 0; h--) {
+            LineDiff.Hunk hunk = hunks.get(h);
+            int common = Math.min(hunk.oldCount, hunk.newCount);
+            for (int k = 0; k < common; k++) {
+                edits.add(new Edit(Kind.SET, hunk.oldStart + k, a.line(hunk.oldStart + k), b.line(hunk.newStart + k)));
+            }
+            for (int k = common; k < hunk.newCount; k++) {
+                edits.add(new Edit(Kind.INSERT, hunk.oldStart + k, null, b.line(hunk.newStart + k)));
+            }
+            for (int k = common; k < hunk.oldCount; k++) {
+                edits.add(new Edit(Kind.DELETE, hunk.oldStart + common, a.line(hunk.oldStart + k), null));
+            }
+        }
+        return new HostsPatch(edits);
+    }
+
+    public void applyTo(List<String> lines) throws ConflictException {
+        for (Edit edit : edits) {
+            switch (edit.kind) {
+                case SET:
+                    checkLine(lines, edit);
+                    lines.set(edit.index, edit.newLine);
+                    break;
+                case INSERT:
+                    if (edit.index < 0 || edit.index > lines.size()) {
+                        throw new ConflictException("Insertion hors limites à la ligne " + (edit.index + 1));
+                    }
+                    lines.add(edit.index, edit.newLine);
+                    break;
+                case DELETE:
+                    checkLine(lines, edit);
+                    lines.remove(edit.index);
+                    break;
+            }
+        }
+    }
+
+    private static void checkLine(List<String> lines, Edit edit) throws ConflictException {
+        if (edit.index < 0 || edit.index >= lines.size() || !lines.get(edit.index).equals(edit.oldLine)) {
+            throw new ConflictException("La ligne " + (edit.index + 1) + " a été modifiée hors de l'application");
+        }
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(edits.size());
+        for (Edit edit : edits) {
+            out.writeByte(edit.kind.ordinal());
+            out.writeInt(edit.index);
+            out.writeUTF(edit.oldLine != null ? edit.oldLine : "");
+            out.writeUTF(edit.newLine != null ? edit.newLine : "");
+        }
+    }
+
+    public static HostsPatch readFrom(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Nombre de modifications invalide : " + count);
+        }
+        List<Edit> edits = new ArrayList<>(Math.min(count, 1024));
+        Kind[] kinds = Kind.values();
+        int invalidKind = -1;
+        for (int i = 0; i < count; i++) {
+            int kind = in.readUnsignedByte();
+            int index = in.readInt();
+            String oldLine = in.readUTF();
+            String newLine = in.readUTF();
+            // La trame est lue jusqu'au bout avant de la refuser : la commande suivante reste alignée
+            if (kind >= kinds.length) {
+                invalidKind = kind;
+            } else {
+                edits.add(new Edit(kinds[kind], index, oldLine, newLine));
+            }
+        }
+        if (invalidKind >= 0) {
+            throw new IOException("Type de modification inconnu : " + invalidKind);
+        }
+        return new HostsPatch(edits);
+    }
+}
@@ -0,0 +1,175 @@
+package net.arkaine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Profil nommé : ensemble de correspondances et de sections (voir
+ * {@link HostsSection}) à activer ensemble.
+ *
+ * Un profil ne gouverne que les lignes « gérées », c'est-à-dire citées par au
+ * moins un profil enregistré : passer d'un profil à l'autre active les
+ * lignes du profil cible, désactive celles des autres profils, et laisse
+ * intactes les lignes qu'aucun profil ne mentionne. Les correspondances du
+ * système ({@link HostLine#isSystemMapping}, localhost par exemple) ne sont
+ * jamais gérées : ni capturées, ni lues d'un profil, ni basculées.
+ *
+ * Format du fichier : une correspondance par ligne, {@code @section Nom} pour
+ * une section entière, commentaires "#".
+ */
+public class HostsProfile {
+    private static final String SECTION_PREFIX = "@section ";
+
+    private final String name;
+    // Clé normalisée -> texte d'origine, pour ajouter une correspondance absente du fichier
+    private final Map<String, String> entries;
+    private final Set<String> sections;
+
+    public HostsProfile(String name, Map<String, String> entries, Set<String> sections) {
+        this.name = name;
+        this.entries = entries;
+        this.sections = sections;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public Set<String> getSections() {
+        return sections;
+    }
+
+    /** Clé d'une correspondance : adresse et noms normalisés, dans l'ordre. */
+    static String key(HostLine line) {
+        StringBuilder key = new StringBuilder(HostsIndex.normalize(line.getIp()));
+        for (String hostname : line.getHostnames()) {
+            key.append(' ').append(HostsIndex.normalize(hostname));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Capture l'état actuel : les sections dont toutes les correspondances
+     * sont actives, et les autres correspondances actives une à une, hors
+     * correspondances du système.
+     */
+    public static HostsProfile capture(String name, List<String> lines) {
+        Map<String, Boolean> sectionEnabled = new LinkedHashMap<>();
+        String section = null;
+        for (String text : lines) {
+            if (HostsSection.isHeader(text)) {
+                section = HostsSection.headerName(text);
+                continue;
+            }
+            HostLine line = HostLine.parse(text);
+            if (section != null && line.isMapping() && !line.isSystemMapping()) {
+                sectionEnabled.merge(section, !line.isCommented(), Boolean::logicalAnd);
+            }
+        }
+        Set<String> sections = new LinkedHashSet<>();
+        sectionEnabled.forEach((s, enabled) -> {
+            if (enabled) {
+                sections.add(s);
+            }
+        });
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        section = null;
+        for (String text : lines) {
+            if (HostsSection.isHeader(text)) {
+                section = HostsSection.headerName(text);
+                continue;
+            }
+            HostLine line = HostLine.parse(text);
+            if (line.isMapping() && !line.isCommented() && !line.isSystemMapping()
+                    && (section == null || !sections.contains(section))) {
+                entries.putIfAbsent(key(line), HostLine.withEnabled(text, true));
+            }
+        }
+        return new HostsProfile(name, entries, sections);
+    }
+
+    public static HostsProfile parse(String name, List<String> content) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        Set<String> sections = new LinkedHashSet<>();
+        for (String text : content) {
+            String trimmed = text.trim();
+            if (trimmed.startsWith(SECTION_PREFIX)) {
+                sections.add(trimmed.substring(SECTION_PREFIX.length()).trim());
+                continue;
+            }
+            HostLine line = HostLine.parse(trimmed);
+            // Profils enregistrés avant l'exclusion des correspondances du système
+            if (line.isMapping() && !line.isCommented() && !line.isSystemMapping()) {
+                entries.putIfAbsent(key(line), trimmed);
+            }
+        }
+        return new HostsProfile(name, entries, sections);
+    }
+
+    public List<String> format() {
+        List<String> content = new ArrayList<>();
+        content.add("# Profil hosts : " + name);
+        for (String section : sections) {
+            content.add(SECTION_PREFIX + section);
+        }
+        content.addAll(entries.values());
+        return content;
+    }
+
+    /**
+     * Calcule en mémoire le fichier obtenu en basculant sur ce profil.
+     *
+     * @param profiles tous les profils enregistrés, qui définissent les lignes gérées
+     */
+    public List<String> switchFrom(List<String> lines, Collection<HostsProfile> profiles) {
+        Set<String> managedEntries = new HashSet<>(entries.keySet());
+        Set<String> managedSections = new HashSet<>(sections);
+        for (HostsProfile profile : profiles) {
+            managedEntries.addAll(profile.entries.keySet());
+            managedSections.addAll(profile.sections);
+        }
+
+        List<String> result = new ArrayList<>(lines.size() + entries.size());
+        Set<String> seen = new HashSet<>();
+        String section = null;
+        for (String text : lines) {
+            if (HostsSection.isHeader(text)) {
+                section = HostsSection.headerName(text);
+                result.add(text);
+                continue;
+            }
+            HostLine line = HostLine.parse(text);
+            if (!line.isMapping() || line.isSystemMapping()) {
+                result.add(text);
+                continue;
+            }
+            String key = key(line);
+            boolean managed = managedEntries.contains(key) || (section != null && managedSections.contains(section));
+            if (!managed) {
+                result.add(text);
+                continue;
+            }
+            boolean enabled = entries.containsKey(key) || (section != null && sections.contains(section));
+            result.add(line.isCommented() == !enabled ? text : HostLine.withEnabled(text, enabled));
+            seen.add(key);
+        }
+        // Correspondances du profil absentes du fichier : ajoutées à la fin
+        entries.forEach((key, text) -> {
+            if (!seen.contains(key)) {
+                result.add(text);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package net.arkaine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Répertoire des profils enregistrés, un fichier {@code nom.profile} par
+ * profil. Par défaut {@code ~/.hosts-manager/profiles}, ou la propriété
+ * {@code hosts.profiles.dir}.
+ */
+public class HostsProfileStore {
+    private static final String SUFFIX = ".profile";
+
+    private final Path directory;
+
+    public HostsProfileStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static HostsProfileStore defaultStore() {
+        String configured = System.getProperty("hosts.profiles.dir");
+        return new HostsProfileStore(configured != null ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".hosts-manager", "profiles"));
+    }
+
+    public List<String> names() throws IOException {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return names;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String fileName = file.getFileName().toString();
+                names.add(fileName.substring(0, fileName.length() - SUFFIX.length()));
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    public HostsProfile load(String name) throws IOException {
+        return HostsProfile.parse(name, Files.readAllLines(file(name), StandardCharsets.UTF_8));
+    }
+
+    public List<HostsProfile> loadAll() throws IOException {
+        List<HostsProfile> profiles = new ArrayList<>();
+        for (String name : names()) {
+            profiles.add(load(name));
+        }
+        return profiles;
+    }
+
+    public void save(HostsProfile profile) throws IOException {
+        Files.createDirectories(directory);
+        Path target = file(profile.getName());
+        Path tmp = Files.createTempFile(directory, "." + profile.getName(), ".tmp");
+        try {
+            Files.write(tmp, profile.format(), StandardCharsets.UTF_8);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path file(String name) {
+        if (name.isEmpty() || name.contains("/") || name.contains("\\") || name.startsWith(".")) {
+            throw new IllegalArgumentException("Nom de profil invalide : " + name);
+        }
+        return directory.resolve(name + SUFFIX);
+    }
+}
@@ -0,0 +1,238 @@
+package net.arkaine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Index de recherche plein texte sur les noms d'hôte et adresses IP du
+ * fichier hosts, construit hors du thread JavaFX depuis un
+ * {@link HostsDocument.Snapshot}.
+ *
+ * Chaque terme distinct (en minuscules) est découpé en trigrammes ; une
+ * requête d'au moins trois caractères intersecte les listes de ses trigrammes
+ * puis vérifie les candidats. Les requêtes plus courtes cherchent par préfixe
+ * dans les termes triés. Les résultats sont des handles de ligne, convertis en
+ * positions par l'appelant.
+ */
+public class HostsSearchIndex {
+    private static final int CHECK_INTERVAL = 4096;
+
+    /** Résultat d'une recherche, réutilisable pour affiner la suivante. */
+    public static final class Result {
+        private final String query;
+        private final int[] termIds;
+        private final int[] handles;
+
+        Result(String query, int[] termIds, int[] handles) {
+            this.query = query;
+            this.termIds = termIds;
+            this.handles = handles;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public int[] getHandles() {
+            return handles;
+        }
+    }
+
+    private final String[] terms;
+    // Handles du terme i : handles[handleStart[i] .. handleStart[i + 1])
+    private final int[] handleStart;
+    private final int[] handles;
+    private final Map<Long, int[]> trigrams;
+
+    private HostsSearchIndex(String[] terms, int[] handleStart, int[] handles, Map<Long, int[]> trigrams) {
+        this.terms = terms;
+        this.handleStart = handleStart;
+        this.handles = handles;
+        this.trigrams = trigrams;
+    }
+
+    /** @return l'index, ou null si {@code cancelled} est devenu vrai pendant la construction */
+    public static HostsSearchIndex build(HostsDocument.Snapshot lines, BooleanSupplier cancelled) {
+        Map<String, Integer> termIds = new HashMap<>();
+        IntList pairTerms = new IntList();
+        IntList pairHandles = new IntList();
+        for (int i = 0; i < lines.size(); i++) {
+            if (i % CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            HostLine line = HostLine.parse(lines.line(i));
+            if (!line.isMapping()) {
+                continue;
+            }
+            int handle = lines.handleAt(i);
+            addPair(termIds, pairTerms, pairHandles, line.getIp(), handle);
+            for (String name : line.getHostnames()) {
+                addPair(termIds, pairTerms, pairHandles, name, handle);
+            }
+        }
+
+        // Termes triés pour la recherche par préfixe : renumérotation dans l'ordre
+        String[] terms = termIds.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] renumber = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            renumber[termIds.get(terms[i])] = i;
+        }
+
+        // Regroupement des handles par terme (tri par comptage)
+        int[] handleStart = new int[terms.length + 1];
+        for (int p = 0; p < pairTerms.size; p++) {
+            handleStart[renumber[pairTerms.values[p]] + 1]++;
+        }
+        for (int t = 0; t < terms.length; t++) {
+            handleStart[t + 1] += handleStart[t];
+        }
+        int[] handles = new int[pairTerms.size];
+        int[] fill = Arrays.copyOf(handleStart, terms.length);
+        for (int p = 0; p < pairTerms.size; p++) {
+            handles[fill[renumber[pairTerms.values[p]]]++] = pairHandles.values[p];
+        }
+
+        Map<Long, IntList> postings = new HashMap<>();
+        for (int t = 0; t < terms.length; t++) {
+            if (t % CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            String term = terms[t];
+            for (int c = 0; c + 3 <= term.length(); c++) {
+                IntList list = postings.computeIfAbsent(trigram(term, c), k -> new IntList());
+                // Termes parcourus dans l'ordre : un doublon ne peut être que le dernier ajouté
+                if (list.size == 0 || list.values[list.size - 1] != t) {
+                    list.add(t);
+                }
+            }
+        }
+        Map<Long, int[]> trigrams = new HashMap<>(postings.size() * 2);
+        postings.forEach((key, list) -> trigrams.put(key, list.toArray()));
+        return new HostsSearchIndex(terms, handleStart, handles, trigrams);
+    }
+
+    private static void addPair(Map<String, Integer> termIds, IntList pairTerms, IntList pairHandles,
+                                String term, int handle) {
+        Integer id = termIds.computeIfAbsent(HostsIndex.normalize(term), k -> termIds.size());
+        pairTerms.add(id);
+        pairHandles.add(handle);
+    }
+
+    /**
+     * @param previous résultat de la requête précédente : si la nouvelle la
+     *                 contient et que toutes deux cherchent par sous-chaîne
+     *                 (trois caractères au moins), seuls ses termes sont revérifiés
+     * @return le résultat, ou null si la recherche a été annulée
+     */
+    public Result search(String query, Result previous, BooleanSupplier cancelled) {
+        String q = HostsIndex.normalize(query);
+        int[] candidates;
+        // Une requête courte cherche par préfixe : ses termes ne couvrent pas les sous-chaînes de la suivante
+        if (previous != null && previous.query.length() >= 3 && q.contains(previous.query)) {
+            candidates = previous.termIds;
+        } else if (q.length() < 3) {
+            candidates = prefixRange(q);
+        } else {
+            candidates = intersectTrigrams(q);
+        }
+        if (candidates == null) {
+            return null;
+        }
+
+        int[] matched = new int[candidates.length];
+        int count = 0;
+        int handleCount = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (i % CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            int t = candidates[i];
+            if (terms[t].contains(q)) {
+                matched[count++] = t;
+                handleCount += handleStart[t + 1] - handleStart[t];
+            }
+        }
+        matched = Arrays.copyOf(matched, count);
+
+        int[] result = new int[handleCount];
+        int n = 0;
+        for (int t : matched) {
+            for (int h = handleStart[t]; h < handleStart[t + 1]; h++) {
+                result[n++] = handles[h];
+            }
+        }
+        return new Result(q, matched, result);
+    }
+
+    private int[] prefixRange(String prefix) {
+        int from = lowerBound(prefix);
+        int to = lowerBound(prefix + Character.MAX_VALUE);
+        int[] range = new int[to - from];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = from + i;
+        }
+        return range;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = terms.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (terms[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int[] intersectTrigrams(String q) {
+        int[][] lists = new int[q.length() - 2][];
+        for (int c = 0; c + 3 <= q.length(); c++) {
+            int[] list = trigrams.get(trigram(q, c));
+            if (list == null) {
+                return new int[0];
+            }
+            lists[c] = list;
+        }
+        // Part de la liste la plus courte, les autres sont sondées par dichotomie
+        Arrays.sort(lists, (x, y) -> Integer.compare(x.length, y.length));
+        int[] result = lists[0].clone();
+        int size = result.length;
+        for (int l = 1; l < lists.length && size > 0; l++) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (Arrays.binarySearch(lists[l], result[i]) >= 0) {
+                    result[kept++] = result[i];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.arkaine;
+
+import java.util.List;
+
+/**
+ * Sections du fichier hosts : un commentaire {@code # --- nom ---} ouvre un
+ * bloc qui court jusqu'à la section suivante ; {@code # --- end ---} (ou
+ * {@code fin}) ferme le bloc courant sans en ouvrir d'autre.
+ */
+public final class HostsSection {
+    private static final String MARKER = "---";
+
+    /** Ligne de fin de section. */
+    public static final String END = "# " + MARKER + " end " + MARKER;
+
+    private HostsSection() {
+    }
+
+    /** En-tête d'une section : {@code # --- nom ---}. */
+    public static String header(String name) {
+        String header = "# " + MARKER + " " + name.trim() + " " + MARKER;
+        if (!name.trim().equals(headerName(header))) {
+            throw new IllegalArgumentException("Nom de section invalide : " + name);
+        }
+        return header;
+    }
+
+    /** Vrai si la ligne est un en-tête ou une fin de section. */
+    public static boolean isHeader(String line) {
+        String text = line.trim();
+        if (!text.startsWith("#")) {
+            return false;
+        }
+        text = text.substring(1).trim();
+        return text.length() > 2 * MARKER.length()
+                && text.startsWith(MARKER) && text.endsWith(MARKER);
+    }
+
+    /** @return le nom de la section ouverte par cette ligne, ou null (ligne ordinaire ou fin de section) */
+    public static String headerName(String line) {
+        if (!isHeader(line)) {
+            return null;
+        }
+        String text = line.trim().substring(1).trim();
+        String name = text.substring(MARKER.length(), text.length() - MARKER.length()).trim();
+        if (name.isEmpty() || name.equalsIgnoreCase("end") || name.equalsIgnoreCase("fin")) {
+            return null;
+        }
+        return name;
+    }
+
+    /**
+     * Bloc de la section qui contient {@code position} : de son en-tête
+     * jusqu'à la section suivante exclue, ou jusqu'à la ligne de fin incluse.
+     *
+     * @return {début, fin exclue}, ou null si la ligne n'appartient à aucune section
+     */
+    public static int[] blockAt(List<String> lines, int position) {
+        int start = position;
+        while (true) {
+            String text = lines.get(start);
+            if (headerName(text) != null) {
+                break;
+            }
+            // Une fin de section au-dessus de la ligne : elle est hors de tout bloc
+            if ((isHeader(text) && start < position) || start == 0) {
+                return null;
+            }
+            start--;
+        }
+        int end = start + 1;
+        while (end < lines.size() && !isHeader(lines.get(end))) {
+            end++;
+        }
+        if (end < lines.size() && headerName(lines.get(end)) == null) {
+            end++;
+        }
+        return new int[]{start, end};
+    }
+}
@@ -0,0 +1,83 @@
+package net.arkaine;
+
+/**
+ * Histogramme à buckets log-linéaires, dans l'esprit de HdrHistogram : les
+ * valeurs sont regroupées avec une précision relative d'environ 1,5 %
+ * (64 sous-buckets par puissance de deux), en mémoire fixe, et les
+ * percentiles se lisent sans conserver les échantillons.
+ *
+ * Les valeurs sont des entiers positifs dans une unité choisie par
+ * l'appelant (microsecondes, centièmes de tokens/s...). Non synchronisé.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Valeurs écrêtées à 2^40 (près de 13 jours en microsecondes)
+    private static final int MAX_EXPONENT = 40 - SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+
+    private final long[] counts = new long[2 * SUB_BUCKETS + MAX_EXPONENT * SUB_BUCKETS];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    public void record(long value) {
+        long v = Math.max(0, Math.min(value, MAX_VALUE));
+        counts[indexOf(v)]++;
+        totalCount++;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+        sum += v;
+    }
+
+    private static int indexOf(long v) {
+        if (v < 2 * SUB_BUCKETS) {
+            return (int) v;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS;
+        return 2 * SUB_BUCKETS + (exponent - 1) * SUB_BUCKETS + (int) ((v >> exponent) - SUB_BUCKETS);
+    }
+
+    /** Plus grande valeur équivalente au bucket {@code index}. */
+    private static long valueAt(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return (sub << exponent) + (1L << exponent) - 1;
+    }
+
+    /** @param percentile entre 0 et 100 */
+    public long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(valueAt(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+}
@@ -0,0 +1,149 @@
+package net.arkaine;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Liste observable adossée à un {@link HostsDocument} : les {@link HostEntry}
+ * ne sont créées que pour les lignes réellement demandées par la ListView
+ * (cellules visibles) et conservées dans un petit cache. Une entrée dont
+ * l'écriture est en attente n'est jamais évincée, pour garder son identité
+ * jusqu'à l'écriture ou l'annulation.
+ */
+public class LazyHostEntryList extends ObservableListBase<HostEntry> {
+    private static final int CACHE_SIZE = 2048;
+
+    private final HostsDocument document;
+    private final LinkedHashMap<Integer, HostEntry> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true);
+    private HostsIndex index;
+
+    public LazyHostEntryList(HostsDocument document) {
+        this.document = document;
+    }
+
+    public HostsDocument getDocument() {
+        return document;
+    }
+
+    /** @return l'index des noms et adresses, ou null tant qu'il est en construction */
+    public HostsIndex getIndex() {
+        return index;
+    }
+
+    /** Installe l'index construit en arrière-plan, après l'avoir mis à jour des modifications faites entre-temps. */
+    public void setIndex(HostsIndex index) {
+        index.sync();
+        this.index = index;
+    }
+
+    @Override
+    public HostEntry get(int index) {
+        int handle = document.handleAt(index);
+        HostEntry entry = cache.get(handle);
+        if (entry == null) {
+            entry = new HostEntry(document.text(handle));
+            cache.put(handle, entry);
+            evict();
+        }
+        return entry;
+    }
+
+    @Override
+    public int size() {
+        return document.size();
+    }
+
+    /** Ligne basculée ou réécrite : l'entrée en cache reflète déjà le nouvel état. */
+    public void setLine(int index, String text) {
+        String oldText = document.line(index);
+        document.setLine(index, text);
+        if (this.index != null) {
+            this.index.update(document.handleAt(index), oldText, text);
+        }
+    }
+
+    public void insertLine(int index, String text) {
+        document.insert(index, text);
+        if (this.index != null) {
+            this.index.update(document.handleAt(index), null, text);
+        }
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    public void removeLine(int index) {
+        HostEntry removed = get(index);
+        String oldText = document.line(index);
+        int handle = document.remove(index);
+        cache.remove(handle);
+        if (this.index != null) {
+            this.index.update(handle, oldText, null);
+        }
+        beginChange();
+        nextRemove(index, removed);
+        endChange();
+    }
+
+    /**
+     * Applique une différence calculée contre {@link HostsDocument#snapshot()} :
+     * seules les lignes insérées, supprimées ou changées sont notifiées, ce qui
+     * préserve le défilement et la sélection de la ListView. Aucune entrée
+     * n'est créée : les entrées en cache des lignes touchées sont retirées et
+     * notifiées comme éléments remplacés, les autres lignes le sont avec
+     * {@code null} dans {@link javafx.collections.ListChangeListener.Change#getRemoved()}.
+     */
+    public void applyDiff(List<LineDiff.Hunk> hunks, LineDiff.Lines newLines) {
+        beginChange();
+        // Du dernier bloc au premier : les positions des blocs précédents restent valides
+        for (int h = hunks.size() - 1; h >= 0; h--) {
+            LineDiff.Hunk hunk = hunks.get(h);
+            int common = Math.min(hunk.oldCount, hunk.newCount);
+            for (int i = 0; i < common; i++) {
+                int position = hunk.oldStart + i;
+                String oldText = document.line(position);
+                String newText = newLines.line(hunk.newStart + i);
+                int handle = document.handleAt(position);
+                HostEntry previous = cache.remove(handle);
+                document.setLine(position, newText);
+                if (this.index != null) {
+                    this.index.update(handle, oldText, newText);
+                }
+                nextSet(position, previous);
+            }
+            for (int i = hunk.oldCount - 1; i >= common; i--) {
+                int position = hunk.oldStart + i;
+                String oldText = document.line(position);
+                int handle = document.remove(position);
+                HostEntry removed = cache.remove(handle);
+                if (this.index != null) {
+                    this.index.update(handle, oldText, null);
+                }
+                nextRemove(position, removed);
+            }
+            for (int i = common; i < hunk.newCount; i++) {
+                int position = hunk.oldStart + i;
+                String newText = newLines.line(hunk.newStart + i);
+                document.insert(position, newText);
+                if (this.index != null) {
+                    this.index.update(document.handleAt(position), null, newText);
+                }
+                nextAdd(position, position + 1);
+            }
+        }
+        endChange();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Integer, HostEntry>> it = cache.entrySet().iterator();
+        while (cache.size() > CACHE_SIZE && it.hasNext()) {
+            if (it.next().getValue().getState() != HostEntry.State.PENDING) {
+                it.remove();
+            }
+        }
+    }
+}
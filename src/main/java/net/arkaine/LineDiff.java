@@ -0,0 +1,167 @@
+package net.arkaine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Différence ligne à ligne entre deux versions du fichier hosts (algorithme de
+ * Myers). Le préfixe et le suffixe communs sont retirés d'abord : une édition
+ * externe de quelques lignes ne coûte qu'un parcours linéaire du fichier.
+ */
+public final class LineDiff {
+    /** Au-delà de ce nombre de lignes différentes, la zone modifiée est remplacée d'un bloc. */
+    private static final int MAX_EDIT_DISTANCE = 4096;
+
+    /** Accès indexé aux lignes d'une version du fichier. */
+    public interface Lines {
+        int size();
+
+        String line(int index);
+
+        static Lines of(List<String> lines) {
+            return new Lines() {
+                @Override
+                public int size() {
+                    return lines.size();
+                }
+
+                @Override
+                public String line(int index) {
+                    return lines.get(index);
+                }
+            };
+        }
+    }
+
+    /** Bloc contigu : {@code oldCount} lignes à partir de {@code oldStart} remplacées par {@code newCount} lignes. */
+    public static final class Hunk {
+        public final int oldStart;
+        public final int oldCount;
+        public final int newStart;
+        public final int newCount;
+
+        Hunk(int oldStart, int oldCount, int newStart, int newCount) {
+            this.oldStart = oldStart;
+            this.oldCount = oldCount;
+            this.newStart = newStart;
+            this.newCount = newCount;
+        }
+    }
+
+    private LineDiff() {
+    }
+
+    /** @return les blocs modifiés, dans l'ordre du fichier */
+    public static List<Hunk> diff(Lines a, Lines b) {
+        int n = a.size();
+        int m = b.size();
+        int prefix = 0;
+        while (prefix < n && prefix < m && a.line(prefix).equals(b.line(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix
+                && a.line(n - 1 - suffix).equals(b.line(m - 1 - suffix))) {
+            suffix++;
+        }
+        int oldCount = n - prefix - suffix;
+        int newCount = m - prefix - suffix;
+        List<Hunk> hunks = new ArrayList<>();
+        if (oldCount == 0 && newCount == 0) {
+            return hunks;
+        }
+        if (oldCount == 0 || newCount == 0) {
+            hunks.add(new Hunk(prefix, oldCount, prefix, newCount));
+            return hunks;
+        }
+
+        BitSet deleted = new BitSet(oldCount);
+        BitSet inserted = new BitSet(newCount);
+        if (!myers(a, b, prefix, oldCount, newCount, deleted, inserted)) {
+            hunks.add(new Hunk(prefix, oldCount, prefix, newCount));
+            return hunks;
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < oldCount || j < newCount) {
+            if (i < oldCount && j < newCount && !deleted.get(i) && !inserted.get(j)) {
+                i++;
+                j++;
+                continue;
+            }
+            int startI = i;
+            int startJ = j;
+            while ((i < oldCount && deleted.get(i)) || (j < newCount && inserted.get(j))) {
+                if (i < oldCount && deleted.get(i)) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            hunks.add(new Hunk(prefix + startI, i - startI, prefix + startJ, j - startJ));
+        }
+        return hunks;
+    }
+
+    /**
+     * Plus courte suite d'éditions entre a[offset..offset+n) et b[offset..offset+m).
+     *
+     * @return false si la distance dépasse {@link #MAX_EDIT_DISTANCE}
+     */
+    private static boolean myers(Lines a, Lines b, int offset, int n, int m, BitSet deleted, BitSet inserted) {
+        int maxD = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int shift = maxD + 1;
+        int[] v = new int[2 * maxD + 3];
+        List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= maxD; d++) {
+            // Copie de v[-d-1 .. d+1], seule zone relue à l'étape d
+            int[] saved = new int[2 * d + 3];
+            System.arraycopy(v, shift - d - 1, saved, 0, saved.length);
+            trace.add(saved);
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[shift + k - 1] < v[shift + k + 1]))
+                        ? v[shift + k + 1]
+                        : v[shift + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && a.line(offset + x).equals(b.line(offset + y))) {
+                    x++;
+                    y++;
+                }
+                v[shift + k] = x;
+                if (x >= n && y >= m) {
+                    backtrack(trace, d, n, m, deleted, inserted);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void backtrack(List<int[]> trace, int depth, int n, int m, BitSet deleted, BitSet inserted) {
+        int x = n;
+        int y = m;
+        for (int d = depth; d > 0; d--) {
+            int[] v = trace.get(d);
+            int base = d + 1; // v[k] est saved[k + d + 1]
+            int k = x - y;
+            int previousK = (k == -d || (k != d && v[base + k - 1] < v[base + k + 1])) ? k + 1 : k - 1;
+            int previousX = v[base + previousK];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+            }
+            if (x == previousX) {
+                inserted.set(previousY);
+            } else {
+                deleted.set(previousX);
+            }
+            x = previousX;
+            y = previousY;
+        }
+    }
+}
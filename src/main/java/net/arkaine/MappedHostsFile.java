@@ -0,0 +1,167 @@
+package net.arkaine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Instantané en lecture seule d'un fichier hosts, projeté en mémoire avec un
+ * index des débuts de ligne. Les lignes ne sont décodées qu'à la demande.
+ *
+ * Le fichier est projeté directement : le helper le remplace par renommage,
+ * si bien que la projection garde l'ancien contenu. Seul un fichier monté à
+ * part (comme /etc/hosts dans un conteneur) ne peut pas être renommé et est
+ * réécrit sur place, ce qui décalerait ou tronquerait les octets projetés ;
+ * celui-là est d'abord copié dans un fichier temporaire aussitôt supprimé.
+ */
+public final class MappedHostsFile implements LineDiff.Lines {
+    private static final MappedHostsFile EMPTY = new MappedHostsFile(null, new int[]{0}, 0, new BitSet());
+
+    private final MappedByteBuffer buffer;
+    // offsets[i] = début de la ligne i ; offsets[lineCount] = fin du contenu
+    private final int[] offsets;
+    private final int lineCount;
+    private final BitSet commented;
+
+    private MappedHostsFile(MappedByteBuffer buffer, int[] offsets, int lineCount, BitSet commented) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+        this.lineCount = lineCount;
+        this.commented = commented;
+    }
+
+    public static MappedHostsFile empty() {
+        return EMPTY;
+    }
+
+    public static MappedHostsFile open(Path path) throws IOException {
+        if (replacedByRename(path)) {
+            return map(path);
+        }
+        Path snapshot = Files.createTempFile("hosts", ".snapshot");
+        try {
+            Files.copy(path, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            return map(snapshot);
+        } finally {
+            // La projection survit à la suppression du fichier
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /**
+     * Vrai si {@link HostsHelper#writeAtomically} peut renommer sur ce fichier :
+     * un fichier monté seul n'est pas sur le même système de fichiers que son
+     * répertoire, et c'est alors la réécriture sur place qui s'applique.
+     */
+    private static boolean replacedByRename(Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        return directory == null || Files.getFileStore(path).equals(Files.getFileStore(directory));
+    }
+
+    private static MappedHostsFile map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return EMPTY;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Fichier hosts trop volumineux : " + size + " octets");
+            }
+            return index(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private static MappedHostsFile index(MappedByteBuffer buffer) {
+        int size = buffer.limit();
+        int[] offsets = new int[1024];
+        BitSet commented = new BitSet();
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            if (buffer.get(i) == '\n') {
+                offsets = record(offsets, count, start);
+                if (i > start && buffer.get(start) == '#') {
+                    commented.set(count);
+                }
+                count++;
+                start = i + 1;
+            }
+        }
+        if (start < size) {
+            // Dernière ligne sans retour à la ligne final
+            offsets = record(offsets, count, start);
+            if (buffer.get(start) == '#') {
+                commented.set(count);
+            }
+            count++;
+        }
+        offsets = record(offsets, count, size);
+        return new MappedHostsFile(buffer, offsets, count, commented);
+    }
+
+    private static int[] record(int[] offsets, int index, int value) {
+        if (index == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[index] = value;
+        return offsets;
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public int size() {
+        return lineCount;
+    }
+
+    @Override
+    public String line(int index) {
+        int start = offsets[index];
+        int end = offsets[index + 1];
+        // Retire le séparateur "\n" (et "\r" éventuel) de fin de ligne
+        if (end > start && buffer.get(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Séparateur d'origine de la ligne : "\r\n", "\n", ou "" pour une dernière ligne sans retour final. */
+    public String separator(int index) {
+        int end = offsets[index + 1];
+        if (end == offsets[index] || buffer.get(end - 1) != '\n') {
+            return "";
+        }
+        return end - 1 > offsets[index] && buffer.get(end - 2) == '\r' ? "\r\n" : "\n";
+    }
+
+    /** Recopie la ligne octet pour octet, séparateur compris, quel que soit son encodage. */
+    public void copyLine(int index, OutputStream out) throws IOException {
+        byte[] bytes = new byte[offsets[index + 1] - offsets[index]];
+        buffer.get(offsets[index], bytes);
+        out.write(bytes);
+    }
+
+    public boolean isCommented(int index) {
+        return commented.get(index);
+    }
+
+    /** Copie des lignes commentées, indexées par numéro de ligne. */
+    BitSet commentedLines() {
+        return (BitSet) commented.clone();
+    }
+}
@@ -0,0 +1,238 @@
+package net.arkaine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalogue des modèles du serveur, enregistré sur disque pour être affiché
+ * dès le démarrage puis revalidé en arrière-plan (stale-while-revalidate) :
+ * tant qu'il a moins de {@code chat.models.ttl} secondes (une heure par
+ * défaut), il sert tel quel ; au-delà il sert encore, le temps que la
+ * nouvelle liste arrive.
+ *
+ * Fichier : {@code chat.models.catalog}, ou {@code ~/.gpt4all-chat/models.json}.
+ */
+public class ModelCatalog {
+    private static CompletableFuture<ModelCatalog> warmUp;
+
+    public static final class Model {
+        private final String id;
+        private final Integer contextTokens;
+
+        public Model(String id, Integer contextTokens) {
+            this.id = id;
+            this.contextTokens = contextTokens;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /** Taille de contexte annoncée par le serveur, ou null. */
+        public Integer getContextTokens() {
+            return contextTokens;
+        }
+    }
+
+    public static final class Snapshot {
+        private final List<Model> models;
+        private final long fetchedAt;
+
+        Snapshot(List<Model> models, long fetchedAt) {
+            this.models = Collections.unmodifiableList(models);
+            this.fetchedAt = fetchedAt;
+        }
+
+        public List<Model> getModels() {
+            return models;
+        }
+
+        /** Date de la liste, en millisecondes depuis l'epoch. */
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+
+    private final Path file;
+    private final long ttlMillis;
+    private final OkHttpClient client;
+    private final String modelsUrl;
+    private volatile Snapshot current;
+    private CompletableFuture<Snapshot> refreshing;
+
+    public ModelCatalog(Path file, long ttlMillis, OkHttpClient client, String modelsUrl) {
+        this.file = file;
+        this.ttlMillis = ttlMillis;
+        this.client = client;
+        this.modelsUrl = modelsUrl;
+    }
+
+    public static ModelCatalog defaultCatalog() {
+        String configured = System.getProperty("chat.models.catalog");
+        Path file = configured != null ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".gpt4all-chat", "models.json");
+        return new ModelCatalog(file, TimeUnit.SECONDS.toMillis(Long.getLong("chat.models.ttl", 3600)),
+                ChatHttpClients.models(), ChatHttpClients.endpoints().primary().resolve("/v1/models").toString());
+    }
+
+    /**
+     * Démarrage hors du thread appelant : initialisation du client HTTP,
+     * lecture du catalogue enregistré et, s'il a expiré, revalidation. À
+     * appeler au plus tôt, avant le toolkit JavaFX, pour que tout cela se
+     * fasse pendant la construction de la fenêtre ; les appels suivants
+     * renvoient le même catalogue.
+     */
+    public static synchronized CompletableFuture<ModelCatalog> warmUp() {
+        if (warmUp == null) {
+            warmUp = CompletableFuture.supplyAsync(() -> {
+                ModelCatalog catalog = defaultCatalog();
+                catalog.load();
+                catalog.refreshIfStale();
+                return catalog;
+            });
+        }
+        return warmUp;
+    }
+
+    /** Dernier catalogue connu, enregistré ou revalidé ; null si aucun. */
+    public Snapshot getCurrent() {
+        return current;
+    }
+
+    public boolean isStale() {
+        Snapshot snapshot = current;
+        return snapshot == null || System.currentTimeMillis() - snapshot.fetchedAt > ttlMillis;
+    }
+
+    /** Lit le catalogue enregistré ; un fichier absent, illisible ou d'un autre serveur est ignoré. */
+    public void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            JsonObject root = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+            if (!modelsUrl.equals(root.get("url").getAsString())) {
+                return;
+            }
+            List<Model> models = new ArrayList<>();
+            for (JsonElement element : root.getAsJsonArray("models")) {
+                JsonObject model = element.getAsJsonObject();
+                models.add(new Model(model.get("id").getAsString(),
+                        model.has("contextTokens") ? model.get("contextTokens").getAsInt() : null));
+            }
+            current = new Snapshot(models, root.get("fetchedAt").getAsLong());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Catalogue des modèles ignoré (" + file + ") : " + e.getMessage());
+        }
+    }
+
+    /** @return la revalidation en cours ou lancée, ou null si le catalogue est encore frais */
+    public synchronized CompletableFuture<Snapshot> refreshIfStale() {
+        if (refreshing != null && !refreshing.isDone()) {
+            return refreshing;
+        }
+        return isStale() ? refresh() : null;
+    }
+
+    /** Interroge /v1/models et enregistre la liste ; une revalidation déjà en cours est partagée. */
+    public synchronized CompletableFuture<Snapshot> refresh() {
+        if (refreshing != null && !refreshing.isDone()) {
+            return refreshing;
+        }
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+        refreshing = future;
+        Request request = new Request.Builder().url(modelsUrl).get().build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        throw new IOException("HTTP " + response.code() + " " + response.message());
+                    }
+                    Snapshot snapshot = new Snapshot(parse(response.body().string()), System.currentTimeMillis());
+                    current = snapshot;
+                    save(snapshot);
+                    future.complete(snapshot);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /** Liste de modèles au format OpenAI ({@code data}) ou en tableau nu, avec la taille de contexte si annoncée. */
+    static List<Model> parse(String body) {
+        JsonElement root = JsonParser.parseString(body);
+        JsonArray data = root.isJsonArray() ? root.getAsJsonArray() : root.getAsJsonObject().getAsJsonArray("data");
+        List<Model> models = new ArrayList<>();
+        if (data == null) {
+            return models;
+        }
+        for (JsonElement element : data) {
+            if (!element.isJsonObject() || !element.getAsJsonObject().has("id")) {
+                continue;
+            }
+            JsonObject model = element.getAsJsonObject();
+            // Noms selon les implémentations
+            Integer context = model.has("context_length") ? Integer.valueOf(model.get("context_length").getAsInt())
+                    : model.has("max_model_len") ? Integer.valueOf(model.get("max_model_len").getAsInt()) : null;
+            models.add(new Model(model.get("id").getAsString(), context));
+        }
+        return models;
+    }
+
+    private void save(Snapshot snapshot) {
+        JsonArray models = new JsonArray();
+        for (Model model : snapshot.models) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", model.id);
+            if (model.contextTokens != null) {
+                entry.addProperty("contextTokens", model.contextTokens);
+            }
+            models.add(entry);
+        }
+        JsonObject root = new JsonObject();
+        root.addProperty("url", modelsUrl);
+        root.addProperty("fetchedAt", snapshot.fetchedAt);
+        root.add("models", models);
+        Path directory = file.toAbsolutePath().getParent();
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, ".models", ".tmp");
+            try {
+                Files.writeString(tmp, root.toString(), StandardCharsets.UTF_8);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            // Le catalogue reste utilisable en mémoire
+            System.err.println("Impossible d'enregistrer le catalogue des modèles : " + e.getMessage());
+        }
+    }
+}
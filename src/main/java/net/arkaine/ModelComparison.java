@@ -0,0 +1,182 @@
+package net.arkaine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Mode comparaison : un même prompt envoyé à plusieurs modèles en parallèle,
+ * chaque réponse affichée en streaming dans son propre panneau avec le délai
+ * du premier token, la durée totale et le débit.
+ *
+ * Chaque requête tourne sur un thread virtuel. Chaque instance du
+ * {@link EndpointPool} a son sémaphore, qui limite le nombre d'inférences
+ * simultanées sur ce serveur, dont le CPU est partagé entre elles : une
+ * requête prend la place libre de l'instance préférée pour son modèle, ou
+ * attend celle de l'instance qui la servirait en premier.
+ */
+public class ModelComparison {
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final int MAX_CONCURRENT = Integer.getInteger("chat.compare.concurrency", 2);
+
+    private final OkHttpClient client;
+    private final String apiUrl;
+    private final EndpointPool endpoints;
+
+    public ModelComparison(OkHttpClient client, String apiUrl, EndpointPool endpoints) {
+        this.client = client;
+        this.apiUrl = apiUrl;
+        this.endpoints = endpoints;
+    }
+
+    /** Ouvre la fenêtre de comparaison et lance les requêtes. */
+    public void show(String prompt, List<String> models) {
+        HBox panes = new HBox(10);
+        panes.setPadding(new Insets(10));
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Map<EndpointPool.Endpoint, Semaphore> permits = new HashMap<>();
+        for (EndpointPool.Endpoint endpoint : endpoints.getEndpoints()) {
+            permits.put(endpoint, new Semaphore(MAX_CONCURRENT, true));
+        }
+        Set<Call> calls = ConcurrentHashMap.newKeySet();
+
+        for (String model : models) {
+            TranscriptView answer = new TranscriptView();
+            answer.setPrefWidth(380);
+            VBox.setVgrow(answer, Priority.ALWAYS);
+            Label stats = new Label("En attente...");
+            panes.getChildren().add(new VBox(5, new Label(model), answer, stats));
+
+            executor.execute(() -> run(prompt, model, answer, stats, permits, calls));
+        }
+        executor.shutdown();
+
+        Stage stage = new Stage();
+        // Fermer la fenêtre abandonne les générations : connexions fermées, file d'attente vidée
+        stage.setOnHidden(e -> {
+            executor.shutdownNow();
+            calls.forEach(Call::cancel);
+        });
+        stage.setTitle("Comparaison des modèles");
+        stage.setScene(new Scene(new ScrollPane(panes), 1200, 600));
+        stage.show();
+    }
+
+    private void run(String prompt, String model, TranscriptView answer, Label stats,
+                     Map<EndpointPool.Endpoint, Semaphore> permits, Set<Call> calls) {
+        EndpointPool.Endpoint endpoint;
+        try {
+            endpoint = acquire(model, permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        Semaphore permit = permits.get(endpoint);
+        // Fermé sur toutes les issues : son timer d'affichage s'arrête avec le flux
+        FxTextBatcher batcher = new FxTextBatcher(answer::appendText);
+        try {
+            Platform.runLater(() -> stats.setText("En cours..."));
+            long start = System.nanoTime();
+            long[] firstToken = {0};
+            ChatStreamReader reader = new ChatStreamReader();
+
+            Call call = client.newCall(request(prompt, model, endpoint));
+            calls.add(call);
+            if (Thread.currentThread().isInterrupted()) {
+                // Fenêtre fermée entre-temps
+                call.cancel();
+            }
+            try (Response response = call.execute()) {
+                if (!response.isSuccessful()) {
+                    String error = "Erreur : " + response.code() + " " + response.message();
+                    batcher.close(() -> stats.setText(error));
+                    return;
+                }
+                reader.read(response.body().source(), delta -> {
+                    if (firstToken[0] == 0) {
+                        firstToken[0] = System.nanoTime();
+                    }
+                    batcher.append(delta);
+                });
+            }
+            long end = System.nanoTime();
+
+            String summary = summary(start, firstToken[0], end, reader.getChunkCount());
+            batcher.close(() -> stats.setText(summary));
+        } catch (Exception e) {
+            batcher.close(() -> stats.setText("Erreur de connexion : " + e.getMessage()));
+        } finally {
+            permit.release();
+        }
+    }
+
+    /** Place libre sur la meilleure instance pour le modèle, sinon attente sur la préférée. */
+    private EndpointPool.Endpoint acquire(String model, Map<EndpointPool.Endpoint, Semaphore> permits)
+            throws InterruptedException {
+        List<EndpointPool.Endpoint> candidates = endpoints.candidates(model);
+        for (EndpointPool.Endpoint endpoint : candidates) {
+            if (permits.get(endpoint).tryAcquire()) {
+                return endpoint;
+            }
+        }
+        EndpointPool.Endpoint preferred = candidates.get(0);
+        permits.get(preferred).acquire();
+        return preferred;
+    }
+
+    private Request request(String prompt, String model, EndpointPool.Endpoint endpoint) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.add("messages", messages);
+        body.addProperty("stream", true);
+        return new Request.Builder()
+                .url(apiUrl)
+                .post(RequestBody.create(body.toString(), JSON))
+                // La place est réservée sur cette instance : le pool ne doit pas la rediriger
+                .tag(EndpointPool.Endpoint.class, endpoint)
+                .build();
+    }
+
+    /** Un événement du flux correspond en pratique à un token généré. */
+    private static String summary(long start, long firstToken, long end, int tokens) {
+        if (firstToken == 0) {
+            return "Réponse vide, " + (end - start) / 1_000_000 + " ms";
+        }
+        double generationSeconds = (end - firstToken) / 1e9;
+        String rate = generationSeconds > 0
+                ? String.format("%.1f tokens/s", (tokens - 1) / generationSeconds)
+                : "-";
+        return "1er token : " + (firstToken - start) / 1_000_000 + " ms"
+                + " | total : " + (end - start) / 1_000_000 + " ms"
+                + " | " + tokens + " tokens, " + rate;
+    }
+}
@@ -0,0 +1,67 @@
+package net.arkaine;
+
+import javafx.application.Platform;
+import javafx.scene.control.TitledPane;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Panneau repliable de la réponse HTTP brute. Le texte, coûteux à produire
+ * pour une longue réponse (JSON indenté), n'est calculé que si le panneau
+ * est déplié, hors du thread JavaFX, et une seule fois par réponse.
+ */
+public class RawResponseView extends TitledPane {
+    private final TranscriptView area = new TranscriptView();
+    private Supplier<String> source;
+    private boolean rendered;
+    private long generation;
+
+    public RawResponseView(String title) {
+        setText(title);
+        area.setPrefHeight(200);
+        area.setPromptText("Réponse HTTP brute apparaîtra ici");
+        setContent(area);
+        setExpanded(false);
+        expandedProperty().addListener((obs, wasExpanded, expanded) -> {
+            if (expanded) {
+                render();
+            }
+        });
+    }
+
+    /** Texte déjà disponible, affiché tel quel. */
+    public void show(String text) {
+        showLazily(() -> text);
+    }
+
+    /** Texte produit à la demande, à l'ouverture du panneau. */
+    public void showLazily(Supplier<String> text) {
+        source = text;
+        rendered = false;
+        generation++;
+        area.clear();
+        if (isExpanded()) {
+            render();
+        }
+    }
+
+    public void clear() {
+        showLazily(() -> "");
+    }
+
+    private void render() {
+        if (rendered || source == null) {
+            return;
+        }
+        rendered = true;
+        long current = generation;
+        Supplier<String> text = source;
+        area.setText("Mise en forme...");
+        CompletableFuture.supplyAsync(text).whenComplete((result, error) -> Platform.runLater(() -> {
+            if (current == generation) {
+                area.setText(error != null ? "Erreur de mise en forme : " + error.getMessage() : result);
+            }
+        }));
+    }
+}
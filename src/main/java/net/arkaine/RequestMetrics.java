@@ -0,0 +1,159 @@
+package net.arkaine;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * Mesures d'une requête de complétion. L'objet est attaché à la requête
+ * OkHttp par {@code tag(RequestMetrics.class, ...)} ; {@link #LISTENER_FACTORY}
+ * y reporte les temps réseau, l'appelant y ajoute le premier token et les
+ * compteurs de tokens. Les durées sont en nanosecondes, -1 si non mesurées.
+ */
+public class RequestMetrics {
+    /** Fabrique d'écouteurs OkHttp : sans étiquette sur la requête, rien n'est mesuré. */
+    public static final EventListener.Factory LISTENER_FACTORY = call -> {
+        RequestMetrics metrics = call.request().tag(RequestMetrics.class);
+        return metrics != null ? metrics.new Listener() : EventListener.NONE;
+    };
+
+    private final String model;
+    private final long startNanos = System.nanoTime();
+    private final long startEpochMillis = System.currentTimeMillis();
+    private volatile long dnsNanos = -1;
+    private volatile long connectNanos = -1;
+    private volatile long firstByteNanos = -1;
+    private volatile long firstTokenNanos = -1;
+    private volatile long totalNanos = -1;
+    private volatile int promptTokens = -1;
+    private volatile int completionTokens = -1;
+    private volatile String outcome = "ok";
+
+    public RequestMetrics(String model) {
+        this.model = model;
+    }
+
+    /** À appeler à la réception du premier fragment de texte. */
+    public void markFirstToken() {
+        if (firstTokenNanos < 0) {
+            firstTokenNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    /** Termine la mesure ; un compteur négatif signifie inconnu. */
+    public void finish(int promptTokens, int completionTokens, String outcome) {
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.outcome = outcome;
+        if (firstTokenNanos < 0 && completionTokens > 0) {
+            // Réponse non streamée : tout le texte arrive avec le corps
+            firstTokenNanos = totalNanos;
+        }
+    }
+
+    /** Débit de génération après le premier token, ou -1. */
+    public double tokensPerSecond() {
+        if (completionTokens <= 0 || totalNanos < 0) {
+            return -1;
+        }
+        long generation = firstTokenNanos >= 0 && firstTokenNanos < totalNanos
+                ? totalNanos - firstTokenNanos : totalNanos;
+        return generation > 0 ? completionTokens / (generation / 1e9) : -1;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    public long getDnsNanos() {
+        return dnsNanos;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    public long getFirstTokenNanos() {
+        return firstTokenNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    private final class Listener extends EventListener {
+        private long dnsStart;
+        private long connectStart;
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            dnsNanos = System.nanoTime() - dnsStart;
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            connectNanos = System.nanoTime() - connectStart;
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol,
+                                  IOException e) {
+            connectNanos = System.nanoTime() - connectStart;
+        }
+
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            if (firstByteNanos < 0) {
+                firstByteNanos = System.nanoTime() - startNanos;
+            }
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            // Connexion réutilisée du pool : ni DNS ni connexion
+            if (connectNanos < 0) {
+                connectNanos = 0;
+                dnsNanos = Math.max(dnsNanos, 0);
+            }
+        }
+    }
+}
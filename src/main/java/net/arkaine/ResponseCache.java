@@ -0,0 +1,199 @@
+package net.arkaine;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Cache des réponses de /v1/chat/completions.
+ *
+ * La clé est l'empreinte SHA-256 de la requête normalisée : modèle, messages
+ * et paramètres d'échantillonnage, sans le drapeau {@code stream} qui ne
+ * change pas le texte produit. Les réponses sont gardées en mémoire dans une
+ * LRU bornée en octets et, si un répertoire est donné, dans un fichier par
+ * clé pour survivre aux redémarrages. Avec un répertoire, le constructeur,
+ * {@link #get} et {@link #put} touchent le disque : à appeler hors du thread
+ * JavaFX.
+ */
+public class ResponseCache {
+    private static final String SUFFIX = ".txt";
+
+    private final long maxMemoryBytes;
+    private final Path directory;
+    private final long maxDiskBytes;
+    private final LinkedHashMap<String, String> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param directory répertoire du cache disque, ou null pour un cache en mémoire seulement
+     */
+    public ResponseCache(long maxMemoryBytes, Path directory, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory != null) {
+            Files.createDirectories(directory);
+            pruneDisk();
+        }
+    }
+
+    /** Calcule la clé d'une requête. */
+    public static String key(JsonObject requestBody) {
+        TreeMap<String, JsonElement> fields = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> entry : requestBody.entrySet()) {
+            if (!"stream".equals(entry.getKey())) {
+                fields.put(entry.getKey(), entry.getValue());
+            }
+        }
+        StringBuilder canonical = new StringBuilder();
+        for (Map.Entry<String, JsonElement> entry : fields.entrySet()) {
+            canonical.append(entry.getKey()).append('=');
+            if ("messages".equals(entry.getKey()) && entry.getValue().isJsonArray()) {
+                for (JsonElement message : entry.getValue().getAsJsonArray()) {
+                    JsonObject object = message.getAsJsonObject();
+                    canonical.append(object.get("role").getAsString()).append(':')
+                            .append(normalize(object.get("content").getAsString())).append('\u0000');
+                }
+            } else {
+                canonical.append(entry.getValue()).append('\u0000');
+            }
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String normalize(String content) {
+        return content.replace("\r\n", "\n").trim();
+    }
+
+    /** @return la réponse en cache, ou null */
+    public synchronized String get(String key) {
+        String reply = memory.get(key);
+        if (reply == null && directory != null) {
+            reply = readDisk(key);
+            if (reply != null) {
+                putMemory(key, reply);
+            }
+        }
+        if (reply != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return reply;
+    }
+
+    public synchronized void put(String key, String reply) {
+        putMemory(key, reply);
+        if (directory != null) {
+            writeDisk(key, reply);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void putMemory(String key, String reply) {
+        String previous = memory.put(key, reply);
+        if (previous != null) {
+            memoryBytes -= sizeOf(previous);
+        }
+        memoryBytes += sizeOf(reply);
+        Iterator<Map.Entry<String, String>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= sizeOf(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+
+    private static long sizeOf(String reply) {
+        // Ordre de grandeur de l'occupation mémoire d'une chaîne
+        return 2L * reply.length() + 64;
+    }
+
+    private String readDisk(String key) {
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            String reply = Files.readString(file, StandardCharsets.UTF_8);
+            // La date de modification sert d'horodatage LRU sur disque
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return reply;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, String reply) {
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+            long previous = Files.exists(file) ? Files.size(file) : 0;
+            Path temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, bytes);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskBytes += bytes.length - previous;
+            if (diskBytes > maxDiskBytes) {
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            System.err.println("Écriture du cache impossible : " + e.getMessage());
+        }
+    }
+
+    /** Supprime les fichiers les moins récemment utilisés au-delà de la taille maximale. */
+    private void pruneDisk() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        Map<Path, Long> modified = new LinkedHashMap<>();
+        long total = 0;
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+            total += Files.size(file);
+        }
+        files.sort(Comparator.comparing(modified::get));
+        for (Path file : files) {
+            if (total <= maxDiskBytes) {
+                break;
+            }
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            total -= size;
+        }
+        diskBytes = total;
+    }
+}
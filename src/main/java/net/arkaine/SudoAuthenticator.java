@@ -1,15 +1,25 @@
 package net.arkaine;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
 public class SudoAuthenticator {
     public static boolean authenticate(String password) {
         try {
-            String[] cmd = {
-                    "/bin/bash",
-                    "-c",
-                    "echo " + password + " | sudo -S true"
-            };
+            // Le mot de passe passe par l'entrée standard, pas par la ligne de commande ;
+            // l'entrée est refermée aussitôt pour qu'un mot de passe faux échoue sans attendre
+            String[] cmd = {"sudo", "-k", "-S", "-p", "", "true"};
 
-            Process process = Runtime.getRuntime().exec(cmd);
+            Process process = new ProcessBuilder(cmd)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try (OutputStream out = process.getOutputStream()) {
+                out.write((password + "\n").getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // sudo a déjà quitté : le code de sortie le dira
+            }
             int exitCode = process.waitFor();
             return exitCode == 0;
 
@@ -19,21 +29,20 @@ public class SudoAuthenticator {
         }
     }
 
-    public static boolean writeToHostsFile(String content, String password) {
+    /**
+     * Vérifie le mot de passe puis démarre le helper privilégié de la session.
+     *
+     * @return le client du helper, ou null si l'authentification échoue
+     */
+    public static HostsHelperClient startHelper(String hostsFile, String password) {
+        if (!authenticate(password)) {
+            return null;
+        }
         try {
-            // Utilise le mot de passe stocké pour l'écriture
-            String[] cmd = {
-                    "/bin/bash",
-                    "-c",
-                    "echo " + password + " | sudo -S bash -c 'echo \"" + content.replace("\"", "\\\"") + "\" > /etc/hosts'"
-            };
-
-            Process process = Runtime.getRuntime().exec(cmd);
-            return process.waitFor() == 0;
-
-        } catch (Exception e) {
+            return HostsHelperClient.startPrivileged(hostsFile, password);
+        } catch (IOException e) {
             e.printStackTrace();
-            return false;
+            return null;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,186 @@
+package net.arkaine;
+
+import javafx.collections.ObservableList;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Affichage en lecture seule d'un long texte produit au fil de l'eau
+ * (réponse d'un modèle, réponse HTTP brute), à la place d'une TextArea.
+ *
+ * Le texte est découpé en blocs d'au plus {@link #MAX_LINES} lignes et
+ * {@link #MAX_CHARS} caractères, présentés dans une ListView : seuls les
+ * blocs visibles ont une cellule et sont mis en page. Un ajout ne remplace
+ * que le dernier bloc, ou en ouvre de nouveaux ; le coût d'une mise à jour
+ * ne dépend donc pas de la longueur du texte déjà affiché.
+ *
+ * Tant que la fin est visible, la vue la suit pendant le streaming ; si
+ * l'utilisateur remonte, elle ne bouge plus. Ctrl+C copie les blocs
+ * sélectionnés, le menu contextuel tout le texte.
+ */
+public class TranscriptView extends ListView<String> {
+    static final int MAX_LINES = 32;
+    static final int MAX_CHARS = 4096;
+
+    public TranscriptView() {
+        getStyleClass().add("transcript-view");
+        // Pas de couleur alternée : les blocs doivent se lire comme un texte continu
+        setStyle("-fx-control-inner-background-alt: -fx-control-inner-background;");
+        getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        setCellFactory(list -> new ChunkCell());
+
+        MenuItem copySelection = new MenuItem("Copier");
+        copySelection.setOnAction(e -> copy(String.join("", getSelectionModel().getSelectedItems())));
+        MenuItem copyAll = new MenuItem("Tout copier");
+        copyAll.setOnAction(e -> copy(getText()));
+        setContextMenu(new ContextMenu(copySelection, copyAll));
+        addEventHandler(KeyEvent.KEY_PRESSED, e -> {
+            if (e.isShortcutDown() && e.getCode() == KeyCode.C) {
+                copy(String.join("", getSelectionModel().getSelectedItems()));
+                e.consume();
+            }
+        });
+    }
+
+    public void setPromptText(String text) {
+        setPlaceholder(new Label(text));
+    }
+
+    /** Remplace tout le texte ; seuls les blocs visibles seront mis en page. */
+    public void setText(String text) {
+        getItems().setAll(split(text == null ? "" : text));
+        scrollTo(0);
+    }
+
+    /** Ajoute à la fin : seul le dernier bloc est recopié puis réaffiché. */
+    public void appendText(String text) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        boolean follow = isAtEnd();
+        ObservableList<String> items = getItems();
+        int last = items.size() - 1;
+        List<String> chunks = split(last >= 0 ? items.get(last) + text : text);
+        if (last >= 0) {
+            items.set(last, chunks.get(0));
+            if (chunks.size() > 1) {
+                items.addAll(chunks.subList(1, chunks.size()));
+            }
+        } else {
+            items.setAll(chunks);
+        }
+        if (follow) {
+            scrollToEnd();
+        }
+    }
+
+    public void clear() {
+        getItems().clear();
+    }
+
+    /** Texte complet : à réserver aux copies et exports, il est reconstruit à chaque appel. */
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        for (String chunk : getItems()) {
+            text.append(chunk);
+        }
+        return text.toString();
+    }
+
+    /** Découpe après un saut de ligne quand c'est possible, jamais au milieu d'une paire de substitution. */
+    static List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = cut(text, start);
+            chunks.add(text.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static int cut(String text, int start) {
+        int limit = Math.min(text.length(), start + MAX_CHARS);
+        int lines = 0;
+        int lastNewline = -1;
+        for (int i = start; i < limit; i++) {
+            if (text.charAt(i) == '\n') {
+                lastNewline = i;
+                if (++lines == MAX_LINES) {
+                    return i + 1;
+                }
+            }
+        }
+        if (limit == text.length()) {
+            return limit;
+        }
+        if (lastNewline >= start + MAX_CHARS / 2) {
+            return lastNewline + 1;
+        }
+        // Ligne très longue (JSON compact, base64) : coupure franche, la ligne continue dans le bloc suivant
+        return Character.isHighSurrogate(text.charAt(limit - 1)) ? limit - 1 : limit;
+    }
+
+    private boolean isAtEnd() {
+        VirtualFlow<?> flow = flow();
+        if (flow == null || getItems().isEmpty()) {
+            return true;
+        }
+        IndexedCell<?> lastVisible = flow.getLastVisibleCell();
+        return flow.getPosition() >= 0.999
+                || (lastVisible != null && lastVisible.getIndex() >= getItems().size() - 1);
+    }
+
+    private void scrollToEnd() {
+        VirtualFlow<?> flow = flow();
+        if (flow != null) {
+            // Position relative : reste en bas quand le dernier bloc grandit à la mise en page suivante
+            flow.setPosition(1);
+        } else {
+            scrollTo(getItems().size() - 1);
+        }
+    }
+
+    private VirtualFlow<?> flow() {
+        return lookup(".virtual-flow") instanceof VirtualFlow<?> flow ? flow : null;
+    }
+
+    private static void copy(String text) {
+        ClipboardContent content = new ClipboardContent();
+        content.putString(text);
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    /** Cellule à hauteur variable : le texte est replié sur la largeur de la liste. */
+    private static final class ChunkCell extends ListCell<String> {
+        ChunkCell() {
+            setWrapText(true);
+            // Sans cela la largeur préférée du texte élargit la liste au lieu de replier
+            setPrefWidth(0);
+        }
+
+        @Override
+        protected void updateItem(String chunk, boolean empty) {
+            super.updateItem(chunk, empty);
+            if (empty || chunk == null) {
+                setText(null);
+            } else {
+                // Le saut de ligne final est rendu par la frontière avec le bloc suivant
+                setText(chunk.endsWith("\n") ? chunk.substring(0, chunk.length() - 1) : chunk);
+            }
+        }
+    }
+}
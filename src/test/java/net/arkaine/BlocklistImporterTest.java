@@ -0,0 +1,56 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BlocklistImporterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void mergeKeepsBytesOutsideTheSection() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        // Fichier Windows en Latin-1 dont l'ancienne section est remplacée, sans retour final
+        Files.write(hosts, ("# Réseau du café\r\n127.0.0.1 localhost\r\n"
+                + HostsSection.header("pub") + "\r\n0.0.0.0 old.example\r\n" + HostsSection.END + "\r\n"
+                + "10.0.0.1 déjà.example tracker.example")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        Path source = directory.resolve("list.txt");
+        Files.writeString(source, "0.0.0.0 ads.example\n0.0.0.0 tracker.example\n");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlocklistImporter.Stats stats = new BlocklistImporter("pub", List.of(source)).merge(hosts, out);
+
+        assertArrayEquals(("# Réseau du café\r\n127.0.0.1 localhost\r\n"
+                        + HostsSection.header("pub") + "\r\n0.0.0.0 ads.example\r\n" + HostsSection.END + "\r\n"
+                        + "10.0.0.1 déjà.example tracker.example").getBytes(StandardCharsets.ISO_8859_1),
+                out.toByteArray());
+        assertEquals(1, stats.getImported());
+        assertEquals(1, stats.getDuplicates());
+    }
+
+    @Test
+    void appendedSectionFollowsLastLineWithoutSeparator() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        Files.write(hosts, "127.0.0.1 localhost\r\n10.0.0.1 intranet".getBytes(StandardCharsets.US_ASCII));
+        Path source = directory.resolve("list.txt");
+        Files.writeString(source, "ads.example\n");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BlocklistImporter("pub", List.of(source)).merge(hosts, out);
+
+        assertEquals("127.0.0.1 localhost\r\n10.0.0.1 intranet\r\n" + HostsSection.header("pub")
+                        + "\r\n0.0.0.0 ads.example\r\n" + HostsSection.END + "\r\n",
+                out.toString(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,35 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatBatchRunnerTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void completedIdsSkipsUnreadableLines() throws IOException {
+        Path output = directory.resolve("sortie.jsonl");
+        Files.writeString(output, String.join("\n",
+                "{\"id\":\"1\",\"reply\":\"a\"}",
+                "pas du json",
+                "{\"reply\":\"sans identifiant\"}",
+                "[1,2]",
+                "{\"id\":{\"n\":3},\"reply\":\"identifiant objet\"}",
+                "{\"id\":\"4\",\"error\":\"http 500\"}",
+                "{\"id\":\"5\",\"reply\":\"b\"}",
+                // Dernière ligne tronquée par un arrêt brutal
+                "{\"id\":\"6\",\"rep"), StandardCharsets.UTF_8);
+
+        assertEquals(Set.of("1", "5"), ChatBatchRunner.completedIds(output));
+        assertEquals(7, Files.readAllLines(output, StandardCharsets.UTF_8).size());
+    }
+}
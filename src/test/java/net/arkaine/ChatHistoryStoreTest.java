@@ -0,0 +1,111 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatHistoryStoreTest {
+    private static final long SEGMENT_BYTES = 64 << 10;
+
+    @TempDir
+    Path directory;
+
+    private static void fill(ChatHistoryStore store, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            store.append("modèle", "question numéro" + i + (i % 2 == 0 ? " paire" : " impaire"), "réponse" + i);
+        }
+    }
+
+    /** Simule un arrêt brutal : fin du dernier segment et du journal des mots à moitié écrite. */
+    private void cutTails(int bytes) throws IOException {
+        Path lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(file -> file.getFileName().toString().startsWith("segment-"))
+                    .sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        truncate(lastSegment, bytes);
+        truncate(directory.resolve("terms.log"), bytes);
+    }
+
+    private static void truncate(Path file, int bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - bytes);
+        }
+    }
+
+    private static void assertRecovered(ChatHistoryStore store, int expected) throws IOException {
+        assertEquals(expected, store.size());
+        for (int i = 0; i < expected; i++) {
+            ChatHistoryStore.Exchange exchange = store.read(i);
+            assertEquals("réponse" + i, exchange.getReply(), "échange " + i);
+        }
+        assertArrayEquals(new int[]{expected - 1}, store.search("numéro" + (expected - 1)));
+        assertEquals((expected + 1) / 2, store.search("paire").length);
+        assertEquals(expected / 2, store.search("question impaire").length);
+    }
+
+    @Test
+    void reopenAfterTruncatedTails() throws IOException {
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            fill(store, 0, 100);
+        }
+        cutTails(3);
+
+        // Dernier échange incomplet : écarté, le reste relu et réindexé
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            assertRecovered(store, 99);
+            fill(store, 99, 120);
+            assertRecovered(store, 120);
+        }
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            assertRecovered(store, 120);
+        }
+    }
+
+    @Test
+    void reopenAfterTruncatedTailsPastCompaction() throws IOException {
+        int total = ChatHistoryStore.COMPACTION_THRESHOLD + 50;
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            fill(store, 0, total);
+            assertRecovered(store, total);
+        }
+        cutTails(5);
+
+        // Index compacté intact, delta relu jusqu'à la coupure puis complété depuis les segments
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            assertRecovered(store, total - 1);
+        }
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            assertRecovered(store, total - 1);
+        }
+    }
+
+    @Test
+    void readDoesNotWaitForWriters() throws Exception {
+        try (ChatHistoryStore store = ChatHistoryStore.open(directory, SEGMENT_BYTES)) {
+            fill(store, 0, 10);
+            // Verrou tenu comme pendant une écriture : la lecture d'une cellule passe quand même
+            synchronized (store) {
+                CompletableFuture<String> reply = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return store.size() + " " + store.read(3).getReply();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                assertEquals("10 réponse3", reply.get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+}
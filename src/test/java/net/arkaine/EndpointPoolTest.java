@@ -0,0 +1,195 @@
+package net.arkaine;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EndpointPoolTest {
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final int REQUESTS = 6;
+
+    private final OkHttpClient base = new OkHttpClient.Builder()
+            .callTimeout(10, TimeUnit.SECONDS)
+            .build();
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    private OpenAiStubServer stub(int tokens, String... models) throws IOException {
+        OpenAiStubServer stub = new OpenAiStubServer(0, List.of(models), tokens, 1, 4);
+        servers.add(stub.start());
+        return stub;
+    }
+
+    private static HttpUrl url(OpenAiStubServer stub) {
+        return HttpUrl.get("http://127.0.0.1:" + stub.getPort());
+    }
+
+    private OkHttpClient client(EndpointPool pool) {
+        return base.newBuilder().addInterceptor(pool).build();
+    }
+
+    /** Complétion adressée à la première instance du pool : c'est lui qui choisit où elle part. */
+    private static Request completion(EndpointPool pool, String model, boolean stream) {
+        String body = "{\"model\":\"" + model + "\",\"messages\":[{\"role\":\"user\",\"content\":\"bonjour\"}]"
+                + (stream ? ",\"stream\":true" : "") + "}";
+        return new Request.Builder()
+                .url(pool.primary().resolve("/v1/chat/completions"))
+                .post(RequestBody.create(body, JSON))
+                .build();
+    }
+
+    private static String send(OkHttpClient client, Request request) throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals(200, response.code());
+            return response.body().string();
+        }
+    }
+
+    /** checkAll interroge les instances en arrière-plan : attend que toutes aient répondu. */
+    private static void awaitHealthChecks(EndpointPool pool) throws InterruptedException {
+        pool.checkAll();
+        for (int i = 0; i < 100; i++) {
+            if (pool.getEndpoints().stream().noneMatch(endpoint -> endpoint.getModels().isEmpty())) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Contrôles de santé sans réponse");
+    }
+
+    @Test
+    void retriesOnBadGatewayAndUnavailable() throws IOException {
+        for (int status : new int[]{502, 503}) {
+            OpenAiStubServer failing = stub(3, "m");
+            OpenAiStubServer working = stub(3, "m");
+            failing.setFailureStatus(status);
+            EndpointPool pool = new EndpointPool(List.of(url(failing), url(working)), base);
+            OkHttpClient client = client(pool);
+
+            for (int i = 0; i < REQUESTS; i++) {
+                assertTrue(send(client, completion(pool, "m", false)).contains("Réponse de " + working.getPort()));
+            }
+            // La rotation envoie une partie des requêtes d'abord sur l'instance en échec
+            assertTrue(failing.getCompletionRequests() > 0, "statut " + status);
+            assertEquals(REQUESTS, working.getCompletionRequests());
+            assertEquals(0, pool.getEndpoints().get(0).getServed());
+            assertEquals(REQUESTS, pool.getEndpoints().get(1).getServed());
+        }
+    }
+
+    @Test
+    void retriesOnConnectionFailureAndMarksEndpointDown() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        OpenAiStubServer working = stub(3, "m");
+        EndpointPool pool = new EndpointPool(List.of(HttpUrl.get("http://127.0.0.1:" + closedPort), url(working)), base);
+        OkHttpClient client = client(pool);
+
+        for (int i = 0; i < REQUESTS; i++) {
+            assertTrue(send(client, completion(pool, "m", false)).contains("Réponse de " + working.getPort()));
+        }
+        assertFalse(pool.getEndpoints().get(0).isHealthy());
+        assertEquals(REQUESTS, working.getCompletionRequests());
+    }
+
+    @Test
+    void routesToTheEndpointServingTheModel() throws Exception {
+        OpenAiStubServer first = stub(3, "a");
+        OpenAiStubServer second = stub(3, "b");
+        EndpointPool pool = new EndpointPool(List.of(url(first), url(second)), base);
+        awaitHealthChecks(pool);
+        OkHttpClient client = client(pool);
+
+        for (int i = 0; i < REQUESTS; i++) {
+            assertTrue(send(client, completion(pool, "b", false)).contains("Réponse de " + second.getPort()));
+            assertTrue(send(client, completion(pool, "a", false)).contains("Réponse de " + first.getPort()));
+        }
+        // Modèles connus : aucune requête envoyée à une instance qui ne les sert pas
+        assertEquals(REQUESTS, first.getCompletionRequests());
+        assertEquals(REQUESTS, second.getCompletionRequests());
+    }
+
+    @Test
+    void retriesNotFoundModelWhileModelsAreUnknown() throws IOException {
+        OpenAiStubServer first = stub(3, "a");
+        OpenAiStubServer second = stub(3, "b");
+        EndpointPool pool = new EndpointPool(List.of(url(first), url(second)), base);
+        OkHttpClient client = client(pool);
+
+        for (int i = 0; i < REQUESTS; i++) {
+            assertTrue(send(client, completion(pool, "b", false)).contains("Réponse de " + second.getPort()));
+        }
+        assertEquals(REQUESTS, pool.getEndpoints().get(1).getServed());
+    }
+
+    @Test
+    void sendsToTheEndpointWithFewestRequestsInFlight() throws IOException {
+        // Générations longues : les flux restent ouverts le temps des vérifications
+        List<HttpUrl> urls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            urls.add(url(stub(500, "m")));
+        }
+        EndpointPool pool = new EndpointPool(urls, base);
+        OkHttpClient client = client(pool);
+
+        List<Response> open = new ArrayList<>();
+        List<Integer> ports = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                open.add(client.newCall(completion(pool, "m", true)).execute());
+                ports.add(port(open.get(i)));
+            }
+            for (EndpointPool.Endpoint endpoint : pool.getEndpoints()) {
+                assertEquals(1, endpoint.getInFlight());
+            }
+            // Un flux se termine : le suivant va sur l'instance libérée, quel que soit le tour de rotation
+            for (int round = 0; round < 6; round++) {
+                int index = round * 2 % open.size();
+                open.get(index).close();
+                open.set(index, client.newCall(completion(pool, "m", true)).execute());
+                assertEquals(ports.get(index), port(open.get(index)), "tour " + round);
+                for (EndpointPool.Endpoint endpoint : pool.getEndpoints()) {
+                    assertEquals(1, endpoint.getInFlight(), "tour " + round);
+                }
+            }
+        } finally {
+            open.forEach(Response::close);
+        }
+        // Un flux compte jusqu'à la fermeture de son corps
+        for (EndpointPool.Endpoint endpoint : pool.getEndpoints()) {
+            assertEquals(0, endpoint.getInFlight());
+        }
+    }
+
+    /** Port de l'instance qui sert le flux, annoncé par son premier token : à lire une seule fois. */
+    private static int port(Response stream) throws IOException {
+        String line = stream.body().source().readUtf8LineStrict();
+        Matcher matcher = Pattern.compile("Réponse de (\\d+)").matcher(line);
+        assertTrue(matcher.find(), line);
+        return Integer.parseInt(matcher.group(1));
+    }
+}
@@ -0,0 +1,71 @@
+package net.arkaine;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FxTextBatcherTest {
+    private static final int FRAGMENTS = 200_000;
+
+    /** Plateforme Monocle sans affichage, configurée par surefire dans le pom. */
+    @BeforeAll
+    static void startToolkit() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Platform.startup(started::countDown);
+        } catch (IllegalStateException alreadyStarted) {
+            started.countDown();
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS), "plateforme JavaFX non démarrée");
+    }
+
+    @Test
+    void deliversAtMostOneBatchPerFrame() throws Exception {
+        // Compteur d'images, démarré avant le flux
+        AtomicInteger frames = new AtomicInteger();
+        AnimationTimer frameCounter = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                frames.incrementAndGet();
+            }
+        };
+        Platform.runLater(frameCounter::start);
+
+        List<String> batches = new ArrayList<>();
+        FxTextBatcher batcher = new FxTextBatcher(batches::add);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < FRAGMENTS; i++) {
+            String fragment = "t" + i + " ";
+            expected.append(fragment);
+            batcher.append(fragment);
+        }
+        CompletableFuture<Integer> closed = new CompletableFuture<>();
+        batcher.close(() -> {
+            frameCounter.stop();
+            closed.complete(batches.size());
+        });
+        int delivered = closed.get(30, TimeUnit.SECONDS);
+
+        assertEquals(expected.toString(), String.join("", batches));
+        // Une livraison par image, plus le reste vidé à la fermeture
+        assertTrue(delivered <= frames.get() + 1, delivered + " lots pour " + frames.get() + " images");
+
+        // Timer arrêté à la fermeture : plus aucune livraison ensuite
+        batcher.append("après");
+        Thread.sleep(200);
+        CompletableFuture<Integer> after = new CompletableFuture<>();
+        Platform.runLater(() -> after.complete(batches.size()));
+        assertEquals(delivered, after.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,322 @@
+package net.arkaine;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.text.Text;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HostEntryCellTest {
+    private static final int UPDATES = 1_000_000;
+    private static final int ROWS = 1_000_000;
+    private static final int ROW_HEIGHT = 24;
+    // Le cache de LazyHostEntryList et les cellules sont bornés : le reste du défilement ne doit rien retenir
+    private static final long MAX_HEAP_GROWTH = 16L << 20;
+    private static final double MAX_MEAN_LAYOUT_MS = 10;
+
+    @TempDir
+    static Path directory;
+
+    /** Plateforme Monocle sans affichage, configurée par surefire dans le pom. */
+    @BeforeAll
+    static void startToolkit() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Platform.startup(started::countDown);
+        } catch (IllegalStateException alreadyStarted) {
+            started.countDown();
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS), "plateforme JavaFX non démarrée");
+    }
+
+    /** Exécute sur le thread JavaFX et remonte les échecs d'assertion au thread du test. */
+    private static void onFxThread(Runnable test) throws Throwable {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                test.run();
+                done.complete(null);
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+        });
+        try {
+            done.get(2, TimeUnit.MINUTES);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Entrée dont les propriétés comptent les écouteurs qui leur restent attachés. */
+    private static final class CountingEntry extends HostEntry {
+        private final CountingState state = new CountingState();
+        private final CountingEnabled enabled = new CountingEnabled();
+
+        CountingEntry(String line) {
+            super(line);
+            enabled.set(super.isEnabled());
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return enabled.get();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            this.enabled.set(enabled);
+        }
+
+        @Override
+        public State getState() {
+            return state.get();
+        }
+
+        @Override
+        public void setState(State state) {
+            this.state.set(state);
+        }
+
+        int listeners() {
+            return state.listeners + enabled.listeners;
+        }
+
+        @Override
+        public ObjectProperty<State> stateProperty() {
+            return state;
+        }
+
+        @Override
+        public BooleanProperty enabledProperty() {
+            return enabled;
+        }
+    }
+
+    private static final class CountingState extends SimpleObjectProperty<HostEntry.State> {
+        int listeners;
+
+        CountingState() {
+            super(HostEntry.State.COMMITTED);
+        }
+
+        @Override
+        public void addListener(ChangeListener<? super HostEntry.State> listener) {
+            listeners++;
+            super.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(ChangeListener<? super HostEntry.State> listener) {
+            listeners--;
+            super.removeListener(listener);
+        }
+
+        @Override
+        public void addListener(InvalidationListener listener) {
+            listeners++;
+            super.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(InvalidationListener listener) {
+            listeners--;
+            super.removeListener(listener);
+        }
+    }
+
+    private static final class CountingEnabled extends SimpleBooleanProperty {
+        int listeners;
+
+        @Override
+        public void addListener(ChangeListener<? super Boolean> listener) {
+            listeners++;
+            super.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(ChangeListener<? super Boolean> listener) {
+            listeners--;
+            super.removeListener(listener);
+        }
+
+        @Override
+        public void addListener(InvalidationListener listener) {
+            listeners++;
+            super.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(InvalidationListener listener) {
+            listeners--;
+            super.removeListener(listener);
+        }
+    }
+
+    @Test
+    void recycledCellLeavesNoListenerOnPreviousEntries() throws Throwable {
+        onFxThread(HostEntryCellTest::scrollOneCellThroughAllRows);
+    }
+
+    private static void scrollOneCellThroughAllRows() {
+        HostEntryCell cell = new HostEntryCell(index -> true);
+        // Défilement simulé : la même cellule reçoit successivement chaque ligne, avec des cases vides
+        List<CountingEntry> sample = new ArrayList<>();
+        CountingEntry previous = null;
+        for (int i = 0; i < UPDATES; i++) {
+            CountingEntry entry = new CountingEntry("10.0." + (i >> 8 & 0xff) + "." + (i & 0xff) + " host" + i);
+            cell.updateItem(entry, false);
+            assertEquals(2, entry.listeners(), "ligne " + i);
+            if (previous != null) {
+                assertEquals(0, previous.listeners(), "ligne " + (i - 1));
+            }
+            if (i % 1000 == 0) {
+                sample.add(entry);
+                cell.updateItem(null, true);
+                assertEquals(0, entry.listeners(), "case vide après la ligne " + i);
+            }
+            previous = entry;
+        }
+        for (CountingEntry entry : sample) {
+            assertEquals(0, entry.listeners());
+        }
+    }
+
+    @Test
+    void previousEntryNoLongerDrivesTheCell() throws Throwable {
+        onFxThread(HostEntryCellTest::switchEntries);
+    }
+
+    private static void switchEntries() {
+        HostEntryCell cell = new HostEntryCell(index -> true);
+        CountingEntry first = new CountingEntry("10.0.0.1 first");
+        CountingEntry second = new CountingEntry("# 10.0.0.2 second");
+        cell.updateItem(first, false);
+        cell.updateItem(second, false);
+
+        first.setEnabled(true);
+        first.setEnabled(false);
+        first.setState(HostEntry.State.PENDING);
+        // La case et le style suivent la seconde entrée, commentée et écrite
+        assertFalse(checkBoxSelected(cell));
+        assertEquals("", label(cell).getStyle());
+
+        second.setEnabled(true);
+        second.setState(HostEntry.State.PENDING);
+        assertTrue(checkBoxSelected(cell));
+        assertFalse(label(cell).getStyle().isEmpty());
+    }
+
+    private static boolean checkBoxSelected(HostEntryCell cell) {
+        return ((CheckBox) ((HBox) cell.getGraphic()).getChildren().get(0)).isSelected();
+    }
+
+    private static Label label(HostEntryCell cell) {
+        return (Label) ((HBox) cell.getGraphic()).getChildren().get(1);
+    }
+
+    /**
+     * Vraie ListView dans une fenêtre Monocle, mise en page à chaque écran comme
+     * au défilement. La mise en page du texte demande Pango : sans lui (conteneur
+     * de CI minimal), le test est ignoré plutôt qu'échoué.
+     */
+    @Test
+    void scrollingAMillionRowsKeepsHeapFlat() throws Throwable {
+        onFxThread(() -> assumeTrue(textLayoutAvailable(), "mise en page du texte indisponible (Pango absent)"));
+        Path hosts = directory.resolve("hosts");
+        try (BufferedWriter writer = Files.newBufferedWriter(hosts, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < ROWS; i++) {
+                writer.write((i % 3 == 0 ? "# " : "") + "10." + (i >> 16 & 0xff) + "." + (i >> 8 & 0xff) + "."
+                        + (i & 0xff) + " host" + i + ".example\n");
+            }
+        }
+        onFxThread(() -> {
+            try {
+                scrollThroughAllRows(hosts);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void scrollThroughAllRows(Path hosts) throws IOException {
+        LazyHostEntryList entries = new LazyHostEntryList(HostsDocument.load(hosts));
+        ListView<HostEntry> list = new ListView<>(entries);
+        list.setFixedCellSize(ROW_HEIGHT);
+        list.setCellFactory(view -> new HostEntryCell(index -> true));
+        Stage stage = new Stage();
+        stage.setScene(new Scene(list, 600, 400));
+        stage.show();
+        try {
+            int page = 400 / ROW_HEIGHT - 1;
+            // Échauffement : cache des entrées plein, cellules et classes en place
+            scroll(list, 0, ROWS / 10, page);
+            long before = usedHeapAfterGc();
+            long start = System.nanoTime();
+            int layouts = scroll(list, ROWS / 10, ROWS, page);
+            double meanLayoutMs = (System.nanoTime() - start) / 1e6 / layouts;
+            long growth = usedHeapAfterGc() - before;
+
+            assertTrue(growth < MAX_HEAP_GROWTH, "tas après GC : +" + (growth >> 10) + " Kio");
+            assertTrue(meanLayoutMs < MAX_MEAN_LAYOUT_MS,
+                    String.format("%.2f ms par mise en page sur %d écrans", meanLayoutMs, layouts));
+        } finally {
+            stage.close();
+        }
+    }
+
+    private static int scroll(ListView<HostEntry> list, int from, int to, int page) {
+        int layouts = 0;
+        for (int row = from; row < to; row += page) {
+            list.scrollTo(row);
+            list.layout();
+            layouts++;
+        }
+        return layouts;
+    }
+
+    private static boolean textLayoutAvailable() {
+        try {
+            return new Text("hosts").getLayoutBounds().getWidth() > 0;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,38 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HostsCliTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void editKeepsUntouchedBytesAndLineEndings() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        Files.write(hosts, "# Réseau\r\n127.0.0.1 localhost\r\n10.0.0.1 intranet\r\n10.0.0.2 wiki"
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(HostsHelper.EXIT_OK, HostsCli.run(new String[]{"--file", hosts.toString(),
+                "disable", "intranet", "--", "add", "10.0.0.3", "new"}));
+
+        assertArrayEquals(("# Réseau\r\n127.0.0.1 localhost\r\n#10.0.0.1 intranet\r\n10.0.0.2 wiki\r\n"
+                + "10.0.0.3\tnew").getBytes(StandardCharsets.ISO_8859_1), Files.readAllBytes(hosts));
+    }
+
+    @Test
+    void listReadsNonUtf8File() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        Files.write(hosts, "# café\n10.0.0.1 intranet\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(HostsHelper.EXIT_OK, HostsCli.run(new String[]{"--file", hosts.toString(), "list", "--all"}));
+    }
+}
@@ -0,0 +1,64 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HostsHelperTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void patchKeepsUntouchedBytesAndLineEndings() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        // Fichier Windows en Latin-1, sans retour final
+        Files.write(hosts, ("# Réseau du café\r\n127.0.0.1 localhost\r\n10.0.0.1 old\r\n10.0.0.9 last")
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        HostsHelper.applyPatch(hosts, new HostsPatch(List.of(
+                new HostsPatch.Edit(HostsPatch.Kind.INSERT, 4, null, "10.0.0.5 appended"),
+                new HostsPatch.Edit(HostsPatch.Kind.SET, 2, "10.0.0.1 old", "10.0.0.1 new"),
+                new HostsPatch.Edit(HostsPatch.Kind.INSERT, 1, null, "10.0.0.2 inserted"))));
+
+        assertArrayEquals(("# Réseau du café\r\n10.0.0.2 inserted\r\n127.0.0.1 localhost\r\n10.0.0.1 new\r\n"
+                        + "10.0.0.9 last\r\n10.0.0.5 appended").getBytes(StandardCharsets.ISO_8859_1),
+                Files.readAllBytes(hosts));
+    }
+
+    @Test
+    void patchChecksLinesAsTheClientReadThem() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        byte[] content = "10.0.0.1 a\r\n10.0.0.2 b\r\n".getBytes(StandardCharsets.US_ASCII);
+        Files.write(hosts, content);
+
+        assertThrows(HostsPatch.ConflictException.class, () -> HostsHelper.applyPatch(hosts, new HostsPatch(List.of(
+                new HostsPatch.Edit(HostsPatch.Kind.DELETE, 1, "10.0.0.2 changed", null)))));
+        assertArrayEquals(content, Files.readAllBytes(hosts));
+    }
+
+    @Test
+    void openedFileKeepsItsContentAcrossPatch() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        Files.write(hosts, "10.0.0.1 a\n10.0.0.2 b\n".getBytes(StandardCharsets.US_ASCII));
+        // Projection directe : le renommage du helper laisse l'ancien fichier à la projection
+        MappedHostsFile before = MappedHostsFile.open(hosts);
+
+        HostsHelper.applyPatch(hosts, new HostsPatch(List.of(
+                new HostsPatch.Edit(HostsPatch.Kind.DELETE, 0, "10.0.0.1 a", null))));
+
+        assertEquals(2, before.size());
+        assertEquals("10.0.0.2 b", before.line(1));
+        MappedHostsFile after = MappedHostsFile.open(hosts);
+        assertEquals(1, after.size());
+        assertEquals("10.0.0.2 b", after.line(0));
+    }
+}
@@ -0,0 +1,40 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HostsProfileTest {
+    private static final List<String> HOSTS = List.of(
+            "127.0.0.1 localhost",
+            "127.0.1.1 workstation",
+            "::1 localhost ip6-localhost ip6-loopback",
+            "ff02::1 ip6-allnodes",
+            "127.0.0.1 projet.test",
+            "10.0.0.1 intranet",
+            "#10.0.0.2 staging");
+
+    @Test
+    void captureSkipsSystemMappings() {
+        HostsProfile profile = HostsProfile.capture("dev", HOSTS);
+        assertEquals(List.of("# Profil hosts : dev", "127.0.0.1 projet.test", "10.0.0.1 intranet"), profile.format());
+    }
+
+    @Test
+    void switchNeverDisablesSystemMappings() {
+        // Profil enregistré avant l'exclusion : il cite encore localhost
+        HostsProfile old = HostsProfile.parse("old", List.of("127.0.0.1 localhost", "::1 localhost", "10.0.0.1 intranet"));
+        HostsProfile staging = HostsProfile.parse("staging", List.of("10.0.0.2 staging"));
+
+        assertEquals(List.of(
+                "127.0.0.1 localhost",
+                "127.0.1.1 workstation",
+                "::1 localhost ip6-localhost ip6-loopback",
+                "ff02::1 ip6-allnodes",
+                "127.0.0.1 projet.test",
+                "#10.0.0.1 intranet",
+                "10.0.0.2 staging"), staging.switchFrom(HOSTS, List.of(old, staging)));
+    }
+}
@@ -0,0 +1,64 @@
+package net.arkaine;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HostsSearchIndexTest {
+    @TempDir
+    static Path directory;
+
+    private static HostsSearchIndex index;
+
+    @BeforeAll
+    static void buildIndex() throws IOException {
+        Path hosts = directory.resolve("hosts");
+        Files.write(hosts, List.of(
+                "127.0.0.1 localhost",
+                "10.0.0.1 www.google.com",
+                "10.0.0.2 google.internal gateway",
+                "10.0.0.3 mail.goo.gl",
+                "# 10.0.0.4 go.example.org",
+                "10.0.0.5 ego.example.net"
+        ), StandardCharsets.UTF_8);
+        index = HostsSearchIndex.build(HostsDocument.load(hosts).snapshot(), () -> false);
+    }
+
+    @Test
+    void typingQueryStepByStepMatchesOneShotSearch() {
+        for (String query : List.of("google", "goo.gl", "ego", "10.0.0", "gateway", "example.net")) {
+            HostsSearchIndex.Result previous = null;
+            for (int length = 1; length <= query.length(); length++) {
+                String typed = query.substring(0, length);
+                previous = index.search(typed, previous, () -> false);
+                assertArrayEquals(sorted(index.search(typed, null, () -> false).getHandles()),
+                        sorted(previous.getHandles()), "requête « " + typed + " »");
+            }
+        }
+    }
+
+    @Test
+    void substringQueryFindsNamesNotStartingWithIt() {
+        HostsSearchIndex.Result previous = index.search("g", null, () -> false);
+        previous = index.search("go", previous, () -> false);
+        previous = index.search("goo", previous, () -> false);
+        // www.google.com, google.internal et mail.goo.gl
+        assertEquals(3, previous.getHandles().length);
+    }
+
+    private static int[] sorted(int[] handles) {
+        int[] copy = handles.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
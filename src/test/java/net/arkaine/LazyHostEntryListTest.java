@@ -0,0 +1,66 @@
+package net.arkaine;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LazyHostEntryListTest {
+    private static final int LINES = 10_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void applyDiffCreatesNoEntry() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            lines.add("10.0." + (i >> 8 & 0xff) + "." + (i & 0xff) + " host" + i);
+        }
+        Path hosts = directory.resolve("hosts");
+        Files.write(hosts, lines, StandardCharsets.UTF_8);
+        LazyHostEntryList entries = new LazyHostEntryList(HostsDocument.load(hosts));
+        // Seules les lignes affichées ont une entrée
+        HostEntry shown = entries.get(10);
+        HostEntry shownRemoved = entries.get(LINES - 1);
+
+        // Toutes les lignes paires réécrites, les cent dernières supprimées
+        List<String> edited = new ArrayList<>();
+        for (int i = 0; i < LINES - 100; i++) {
+            edited.add(i % 2 == 0 ? "# " + lines.get(i) : lines.get(i));
+        }
+        List<HostEntry> removed = new ArrayList<>();
+        entries.addListener((ListChangeListener<HostEntry>) change -> {
+            while (change.next()) {
+                removed.addAll(change.getRemoved());
+            }
+        });
+        LineDiff.Lines newLines = LineDiff.Lines.of(edited);
+        entries.applyDiff(LineDiff.diff(entries.getDocument().snapshot(), newLines), newLines);
+
+        // Éléments retirés : les deux entrées affichées, null pour toutes les autres lignes
+        List<HostEntry> created = removed.stream().filter(entry -> entry != null).toList();
+        assertEquals(2, created.size());
+        assertTrue(created.stream().anyMatch(entry -> entry == shown));
+        assertTrue(created.stream().anyMatch(entry -> entry == shownRemoved));
+
+        assertEquals(LINES - 100, entries.size());
+        // L'entrée affichée est recréée à la demande, depuis le nouveau texte
+        HostEntry reloaded = entries.get(10);
+        assertNotSame(shown, reloaded);
+        assertFalse(reloaded.isEnabled());
+        assertSame(reloaded, entries.get(10));
+    }
+}
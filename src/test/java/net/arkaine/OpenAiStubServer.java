@@ -0,0 +1,246 @@
+package net.arkaine;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Faux serveur compatible OpenAI, pour tester {@link EndpointPool} et
+ * essayer {@link ChatBatchRunner} sans modèle réel : /v1/models et
+ * /v1/chat/completions, en streaming (SSE) ou non.
+ *
+ * Chaque génération produit {@code --tokens} tokens espacés de
+ * {@code --token-delay} ms ; {@code --slots} générations au plus tournent
+ * en même temps, les autres attendent, comme sur une instance llama.cpp.
+ * {@link #setFailureStatus} simule une instance surchargée ou en panne.
+ *
+ * Hors des tests, après {@code mvn test-compile} :
+ * {@code java -cp target/classes:target/test-classes:<gson.jar> net.arkaine.OpenAiStubServer
+ * [--port 4891] [--models a,b] [--tokens 32] [--token-delay 20] [--slots 1]}
+ */
+public class OpenAiStubServer {
+    private int port;
+    private final List<String> models;
+    private final int tokens;
+    private final long tokenDelayMillis;
+    private final Semaphore slots;
+    private final AtomicInteger completionRequests = new AtomicInteger();
+    private volatile int failureStatus;
+
+    public OpenAiStubServer(int port, List<String> models, int tokens, long tokenDelayMillis, int slots) {
+        this.port = port;
+        this.models = models;
+        this.tokens = tokens;
+        this.tokenDelayMillis = tokenDelayMillis;
+        this.slots = new Semaphore(slots, true);
+    }
+
+    /** Démarre le serveur ; avec le port 0, un port libre est choisi (voir {@link #getPort}). */
+    public HttpServer start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        port = server.getAddress().getPort();
+        server.createContext("/v1/models", this::handleModels);
+        server.createContext("/v1/chat/completions", this::handleCompletions);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /** Requêtes reçues sur /v1/chat/completions, y compris celles refusées. */
+    public int getCompletionRequests() {
+        return completionRequests.get();
+    }
+
+    /** Statut renvoyé à toute complétion (502, 503...), ou 0 pour répondre normalement. */
+    public void setFailureStatus(int status) {
+        this.failureStatus = status;
+    }
+
+    private void handleModels(HttpExchange exchange) throws IOException {
+        JsonArray data = new JsonArray();
+        for (String model : models) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", model);
+            entry.addProperty("object", "model");
+            data.add(entry);
+        }
+        JsonObject body = new JsonObject();
+        body.addProperty("object", "list");
+        body.add("data", data);
+        send(exchange, 200, body);
+    }
+
+    private void handleCompletions(HttpExchange exchange) throws IOException {
+        completionRequests.incrementAndGet();
+        int failure = failureStatus;
+        if (failure != 0) {
+            exchange.getRequestBody().readAllBytes();
+            send(exchange, failure, error("Échec simulé"));
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, error("Méthode non autorisée"));
+            return;
+        }
+        JsonObject request;
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            request = JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (RuntimeException e) {
+            send(exchange, 400, error("JSON invalide : " + e.getMessage()));
+            return;
+        }
+        String model = request.has("model") ? request.get("model").getAsString() : null;
+        if (model == null || !models.contains(model)) {
+            send(exchange, 404, error("Modèle inconnu : " + model));
+            return;
+        }
+        boolean stream = request.has("stream") && request.get("stream").getAsBoolean();
+
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, error("Serveur arrêté"));
+            return;
+        }
+        try {
+            if (stream) {
+                stream(exchange, model);
+            } else {
+                StringBuilder content = new StringBuilder();
+                for (int i = 0; i < tokens; i++) {
+                    pause();
+                    content.append(token(i));
+                }
+                send(exchange, 200, completion(model, content.toString()));
+            }
+        } finally {
+            slots.release();
+            exchange.close();
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < tokens; i++) {
+            pause();
+            JsonObject delta = new JsonObject();
+            delta.addProperty("content", token(i));
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", 0);
+            choice.add("delta", delta);
+            JsonArray choices = new JsonArray();
+            choices.add(choice);
+            JsonObject chunk = new JsonObject();
+            chunk.addProperty("model", model);
+            chunk.add("choices", choices);
+            // Le client a fermé la connexion : la génération s'arrête sur l'exception
+            out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        JsonObject last = new JsonObject();
+        last.addProperty("model", model);
+        last.add("choices", new JsonArray());
+        last.add("usage", usage());
+        out.write(("data: " + last + "\n\ndata: [DONE]\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String token(int index) {
+        return index == 0 ? "Réponse de " + port : " token" + index;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(tokenDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private JsonObject completion(String model, String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject body = new JsonObject();
+        body.addProperty("object", "chat.completion");
+        body.addProperty("model", model);
+        body.add("choices", choices);
+        body.add("usage", usage());
+        return body;
+    }
+
+    private JsonObject usage() {
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", 0);
+        usage.addProperty("completion_tokens", tokens);
+        usage.addProperty("total_tokens", tokens);
+        return usage;
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        return body;
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = 4891;
+        List<String> models = new ArrayList<>(List.of("gpt4all-7b-chat"));
+        int tokens = 32;
+        long tokenDelay = 20;
+        int slots = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--models" -> models = Arrays.asList(args[i + 1].split(","));
+                case "--tokens" -> tokens = Integer.parseInt(args[i + 1]);
+                case "--token-delay" -> tokenDelay = Long.parseLong(args[i + 1]);
+                case "--slots" -> slots = Integer.parseInt(args[i + 1]);
+                default -> {
+                    System.err.println("Option inconnue : " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+        new OpenAiStubServer(port, models, tokens, tokenDelay, slots).start();
+        System.err.println("Serveur factice sur http://127.0.0.1:" + port + " : " + models);
+    }
+}